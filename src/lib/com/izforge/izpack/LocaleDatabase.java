@@ -129,6 +129,11 @@ public class LocaleDatabase extends TreeMap
 
     static final long serialVersionUID = 4941525634108401848L;
 
+    /**
+     * The database to look up the keys which are not in this one, or null.
+     */
+    private final LocaleDatabase parent;
+
     /**
      * The constructor.
      *
@@ -137,12 +142,52 @@ public class LocaleDatabase extends TreeMap
      * @throws Exception Description of the Exception
      */
     public LocaleDatabase(InputStream in) throws Exception
+    {
+        this(null, in);
+    }
+
+    /**
+     * Creates a database on top of another one. Keys which are not found in this database are
+     * looked up in the parent database, which is neither copied nor modified.
+     *
+     * @param parent the database to fall back to
+     * @param in     An InputStream to read the translation from.
+     *
+     * @throws Exception Description of the Exception
+     */
+    public LocaleDatabase(LocaleDatabase parent, InputStream in) throws Exception
     {
         // We call the superclass default constructor
         super();
+        this.parent = parent;
         add(in);
     }
 
+    /**
+     * Returns the database this one falls back to.
+     *
+     * @return the parent database or null
+     */
+    public LocaleDatabase getParent()
+    {
+        return parent;
+    }
+
+    public Object get(Object key)
+    {
+        Object value = super.get(key);
+        if (value == null && parent != null)
+        {
+            value = parent.get(key);
+        }
+        return value;
+    }
+
+    public boolean containsKey(Object key)
+    {
+        return super.containsKey(key) || (parent != null && parent.containsKey(key));
+    }
+
     /**
      * Adds the contents of the given stream to the data base. The stream have to contain key value
      * pairs as declared by the DTD langpack.dtd.
@@ -80,6 +80,16 @@ public class PackFile implements Serializable
      */
     private long mtime = -1;
 
+    /**
+     * The Unix permission bits of the file, or -1 to keep the default permissions.
+     */
+    private int mode = -1;
+
+    /**
+     * Whether the execute permission is added to the file, keeping its other permissions.
+     */
+    private boolean executable = false;
+
     /**
      * True if file is a directory (length should be 0 or ignored)
      */
@@ -99,6 +109,12 @@ public class PackFile implements Serializable
 
     public long offsetInPreviousPack = -1;
 
+    /**
+     * Number of the installer entry holding the data of this file if it is shared between
+     * packs, -1 otherwise.
+     */
+    private int sharedDataId = -1;
+
     /**
      * True if the file is a Jar and pack200 compression us activated.
      */
@@ -219,6 +235,34 @@ public class PackFile implements Serializable
         this.offsetInPreviousPack = offsetInPreviousPack;
     }
 
+    /**
+     * Sets the number of the shared entry holding the data of this file.
+     *
+     * @param sharedDataId the number of the entry <code>packs/shared-&lt;number&gt;</code>
+     */
+    public void setSharedDataId(int sharedDataId)
+    {
+        this.sharedDataId = sharedDataId;
+    }
+
+    /**
+     * Returns the number of the shared entry holding the data of this file.
+     *
+     * @return the number of the entry or -1 if the data is not shared
+     */
+    public final int getSharedDataId()
+    {
+        return sharedDataId;
+    }
+
+    /**
+     * Whether the data of this file is stored in a shared entry.
+     */
+    public final boolean hasSharedData()
+    {
+        return (sharedDataId >= 0);
+    }
+
     /**
      * The target operating system constraints of this file
      */
@@ -243,6 +287,44 @@ public class PackFile implements Serializable
         return mtime;
     }
 
+    /**
+     * The Unix permission bits of the file, or -1 if the default permissions are kept.
+     */
+    public final int mode()
+    {
+        return mode;
+    }
+
+    /**
+     * Sets the Unix permission bits the file gets when it is installed.
+     *
+     * @param mode the permission bits, e.g. <code>0755</code>, or -1 to keep the default
+     */
+    public void setMode(int mode)
+    {
+        this.mode = mode;
+    }
+
+    /**
+     * Whether the execute permission is added to the file when it is installed, like
+     * <code>chmod a+x</code>. The other permissions are left as the umask created them.
+     */
+    public final boolean isExecutable()
+    {
+        return executable;
+    }
+
+    /**
+     * Sets whether the execute permission is added to the file when it is installed. An absolute
+     * mode set with {@link #setMode(int)} takes precedence.
+     *
+     * @param executable true to add the execute permission
+     */
+    public void setExecutable(boolean executable)
+    {
+        this.executable = executable;
+    }
+
     /**
      * Whether or not this file is going to override any existing ones
      */
@@ -256,9 +338,13 @@ public class PackFile implements Serializable
         return isDirectory;
     }
 
+    /**
+     * Whether the data of this file is stored outside of its pack, either in a previous pack or
+     * in a shared entry.
+     */
     public final boolean isBackReference()
     {
-        return (previousPackId != null);
+        return (previousPackId != null || hasSharedData());
     }
 
     /**
@@ -0,0 +1,304 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.adaptator.impl;
+
+import com.izforge.izpack.adaptator.IXMLElement;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * A SAX based parser which hands the elements at a given path to a handler one at a time, as soon
+ * as each of them is parsed, instead of keeping them in the tree. This allows to process huge
+ * documents with many repeated elements (like the packs of an installation) while only one of them
+ * is held in memory.
+ * <p/>
+ * The built elements look like the ones of {@link XMLParser}: XIncludes are resolved, nested
+ * <code>xfragment</code> elements are removed and the line numbers are set.
+ */
+public class StreamingXMLParser
+{
+
+    /**
+     * Receives the streamed elements.
+     */
+    public interface ElementHandler
+    {
+        /**
+         * Handles a streamed element. The element is detached from the document tree.
+         *
+         * @param element the element
+         * @throws Exception if the element can't be handled, the parse is aborted
+         */
+        void handleElement(IXMLElement element) throws Exception;
+    }
+
+    private final ElementHandler handler;
+
+    private final String[] path;
+
+    private boolean retainTree = true;
+
+    /**
+     * Creates a parser streaming the elements at the given path.
+     *
+     * @param handler the handler of the streamed elements, may be null to drop them
+     * @param path    the element names from the root down to the streamed elements
+     */
+    public StreamingXMLParser(ElementHandler handler, String... path)
+    {
+        this.handler = handler;
+        this.path = path;
+    }
+
+    /**
+     * Sets whether the elements which aren't streamed are kept in a tree. The default is true.
+     *
+     * @param retainTree false to only stream the elements and return no tree
+     */
+    public void setRetainTree(boolean retainTree)
+    {
+        this.retainTree = retainTree;
+    }
+
+    /**
+     * Parses a document. Exceptions thrown by the handler are wrapped into a SAXException.
+     *
+     * @param inputStream the document
+     * @return the root element of the retained tree, without the streamed elements, or null if no
+     *         tree is retained
+     * @throws IOException  if the document can't be read
+     * @throws SAXException if the document is not well-formed or the handler failed
+     */
+    public IXMLElement parse(InputStream inputStream) throws IOException, SAXException
+    {
+        XMLReader reader;
+        DocumentBuilder documentBuilder;
+        try
+        {
+            SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+            saxParserFactory.setNamespaceAware(true);
+            saxParserFactory.setXIncludeAware(true);
+            reader = saxParserFactory.newSAXParser().getXMLReader();
+            documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        }
+        catch (ParserConfigurationException e)
+        {
+            throw new SAXException(e);
+        }
+        TreeBuilder builder = new TreeBuilder(documentBuilder);
+        reader.setContentHandler(builder);
+        reader.parse(new InputSource(inputStream));
+        if (builder.root == null)
+        {
+            return null;
+        }
+        return new XMLElementImpl(builder.root);
+    }
+
+    /**
+     * Builds the retained tree and the streamed elements from the SAX events.
+     */
+    private class TreeBuilder extends DefaultHandler
+    {
+        private final DocumentBuilder documentBuilder;
+
+        private Locator locator;
+
+        private Document document;
+
+        private Element root;
+
+        /**
+         * The element receiving the next children, null if they aren't built.
+         */
+        private Element current;
+
+        /**
+         * The streamed element being built.
+         */
+        private Element streamed;
+
+        /**
+         * The names of the open elements, without the removed xfragment elements.
+         */
+        private final List<String> names = new ArrayList<String>();
+
+        /**
+         * The parents to restore at the end of the open elements.
+         */
+        private final Stack<Element> parents = new Stack<Element>();
+
+        /**
+         * Whether the open elements are removed xfragments.
+         */
+        private final Stack<Boolean> removed = new Stack<Boolean>();
+
+        TreeBuilder(DocumentBuilder documentBuilder)
+        {
+            this.documentBuilder = documentBuilder;
+        }
+
+        public void setDocumentLocator(Locator locator)
+        {
+            this.locator = locator;
+        }
+
+        public void startElement(String uri, String localName, String qName, Attributes atts)
+                throws SAXException
+        {
+            if ("xfragment".equals(qName) && !names.isEmpty())
+            {
+                // the children of a nested xfragment belong to its parent
+                removed.push(Boolean.TRUE);
+                return;
+            }
+            removed.push(Boolean.FALSE);
+            parents.push(current);
+            names.add(qName);
+            if (streamed == null && isStreamedPath())
+            {
+                // each streamed element gets its own document, so it is freed after handling
+                streamed = createElement(documentBuilder.newDocument(), uri, qName, atts);
+                current = streamed;
+            }
+            else if (streamed != null || (retainTree && (current != null || root == null)))
+            {
+                if (document == null)
+                {
+                    document = documentBuilder.newDocument();
+                }
+                Element element = createElement(streamed != null ? streamed.getOwnerDocument()
+                        : document, uri, qName, atts);
+                if (current != null)
+                {
+                    current.appendChild(element);
+                }
+                else
+                {
+                    document.appendChild(element);
+                    root = element;
+                }
+                current = element;
+            }
+            else
+            {
+                current = null;
+            }
+        }
+
+        public void endElement(String uri, String localName, String qName) throws SAXException
+        {
+            if (removed.pop())
+            {
+                return;
+            }
+            Element parent = parents.pop();
+            if (current != null && current == streamed)
+            {
+                streamed = null;
+                if (handler != null)
+                {
+                    try
+                    {
+                        handler.handleElement(new XMLElementImpl(current));
+                    }
+                    catch (SAXException e)
+                    {
+                        throw e;
+                    }
+                    catch (Exception e)
+                    {
+                        throw new SAXException(e);
+                    }
+                }
+            }
+            names.remove(names.size() - 1);
+            current = parent;
+        }
+
+        public void characters(char[] ch, int start, int length)
+        {
+            if (current == null)
+            {
+                return;
+            }
+            Node last = current.getLastChild();
+            if (last != null && last.getNodeType() == Node.TEXT_NODE)
+            {
+                ((Text) last).appendData(new String(ch, start, length));
+            }
+            else
+            {
+                current.appendChild(current.getOwnerDocument().createTextNode(
+                        new String(ch, start, length)));
+            }
+        }
+
+        private boolean isStreamedPath()
+        {
+            if (names.size() != path.length)
+            {
+                return false;
+            }
+            for (int i = 0; i < path.length; i++)
+            {
+                if (!path[i].equals(names.get(i)))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Element createElement(Document owner, String uri, String qName, Attributes atts)
+        {
+            Element element = owner.createElementNS(uri.length() > 0 ? uri : null, qName);
+            for (int i = 0; i < atts.getLength(); i++)
+            {
+                String attributeUri = atts.getURI(i);
+                element.setAttributeNS(attributeUri.length() > 0 ? attributeUri : null,
+                        atts.getQName(i), atts.getValue(i));
+            }
+            if (locator != null)
+            {
+                element.setUserData("ln", locator.getLineNumber(), null);
+            }
+            return element;
+        }
+    }
+}
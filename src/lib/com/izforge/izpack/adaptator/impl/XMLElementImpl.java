@@ -29,6 +29,8 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Vector;
 import java.util.regex.Pattern;
@@ -42,6 +44,18 @@ import java.util.regex.Pattern;
 public class XMLElementImpl implements IXMLElement
 {
 
+    /**
+     * The system property enabling the descendant matching of {@link #getFirstChildNamed(String)}
+     * and {@link #getChildrenNamed(String)}.
+     */
+    public static final String DESCENDANT_MATCHING_PROPERTY = "izpack.xml.descendantMatching";
+
+    /**
+     * If true, the elements are looked up by name in the whole subtree, like the former
+     * implementation did, instead of in the direct children only.
+     */
+    private static boolean descendantMatching = Boolean.getBoolean(DESCENDANT_MATCHING_PROPERTY);
+
     /**
      * The dom element embedded by the XMLElement
      */
@@ -59,6 +73,12 @@ public class XMLElementImpl implements IXMLElement
      */
     private Vector<IXMLElement> childrenVector;
 
+    /**
+     * Map of the children elements by name.
+     * It is generated as it is called, from the childrenVector.
+     */
+    private Map<String, Vector<IXMLElement>> childrenIndex;
+
     /**
      * Create a new root element in a new document.
      *
@@ -153,6 +173,7 @@ public class XMLElementImpl implements IXMLElement
         if (hasChanged)
         {
             hasChanged = false;
+            childrenIndex = null;
             childrenVector = new Vector<IXMLElement>();
             for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
             {
@@ -164,6 +185,42 @@ public class XMLElementImpl implements IXMLElement
         }
     }
 
+    private void initChildrenIndex()
+    {
+        initChildrenVector();
+        if (childrenIndex == null)
+        {
+            childrenIndex = new HashMap<String, Vector<IXMLElement>>();
+            for (IXMLElement child : childrenVector)
+            {
+                Vector<IXMLElement> named = childrenIndex.get(child.getName());
+                if (named == null)
+                {
+                    named = new Vector<IXMLElement>();
+                    childrenIndex.put(child.getName(), named);
+                }
+                named.add(child);
+            }
+        }
+    }
+
+    /**
+     * Sets whether the elements are looked up by name in the whole subtree instead of in the
+     * direct children only. The default is taken from the {@link #DESCENDANT_MATCHING_PROPERTY}
+     * system property.
+     *
+     * @param matchDescendants true to match descendants
+     */
+    public static void setDescendantMatching(boolean matchDescendants)
+    {
+        descendantMatching = matchDescendants;
+    }
+
+    public static boolean isDescendantMatching()
+    {
+        return descendantMatching;
+    }
+
     public int getChildrenCount()
     {
         initChildrenVector();
@@ -184,6 +241,12 @@ public class XMLElementImpl implements IXMLElement
 
     public IXMLElement getFirstChildNamed(String name)
     {
+        if (!descendantMatching)
+        {
+            initChildrenIndex();
+            Vector<IXMLElement> named = childrenIndex.get(name);
+            return named == null ? null : named.get(0);
+        }
         XMLElementImpl res = null;
         NodeList nodeList = element.getElementsByTagName(name);
         if (nodeList.getLength() > 0)
@@ -195,6 +258,12 @@ public class XMLElementImpl implements IXMLElement
 
     public Vector<IXMLElement> getChildrenNamed(String name)
     {
+        if (!descendantMatching)
+        {
+            initChildrenIndex();
+            Vector<IXMLElement> named = childrenIndex.get(name);
+            return named == null ? new Vector<IXMLElement>() : new Vector<IXMLElement>(named);
+        }
         Vector<IXMLElement> res = new Vector<IXMLElement>();
         NodeList nodeList = element.getElementsByTagName(name);
         Element child;
@@ -318,6 +387,7 @@ public class XMLElementImpl implements IXMLElement
 
     public void setContent(String content)
     {
+        hasChanged = true;
         Node child;
         while ((child = this.element.getFirstChild()) != null)
         {
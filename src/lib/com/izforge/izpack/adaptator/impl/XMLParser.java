@@ -32,8 +32,8 @@ import org.xml.sax.XMLReader;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
@@ -51,9 +51,31 @@ import java.net.URL;
 public class XMLParser implements IXMLParser
 {
 
+    /**
+     * The compiled style sheet, shared by all parsers as it is thread-safe.
+     */
+    private static Templates templates;
+
+    /**
+     * The filters wrapping the SAX readers. Creating a reader is expensive, so each thread reuses
+     * its filter for all parsers. A parse never starts another one on the same thread.
+     */
+    private static final ThreadLocal<LineNumberFilter> filters = new ThreadLocal<LineNumberFilter>()
+    {
+        protected LineNumberFilter initialValue()
+        {
+            return createFilter();
+        }
+    };
+
     private LineNumberFilter filter;
 
     public XMLParser()
+    {
+        filter = filters.get();
+    }
+
+    private static LineNumberFilter createFilter()
     {
         try
         {
@@ -61,7 +83,7 @@ public class XMLParser implements IXMLParser
             saxParserFactory.setNamespaceAware(true);
             saxParserFactory.setXIncludeAware(true);
             XMLReader xmlReader = saxParserFactory.newSAXParser().getXMLReader();
-            filter = new LineNumberFilter(xmlReader);
+            return new LineNumberFilter(xmlReader);
 
         } catch (ParserConfigurationException e)
         {
@@ -70,6 +92,29 @@ public class XMLParser implements IXMLParser
         {
             e.printStackTrace();
         }
+        return null;
+    }
+
+    /**
+     * Returns the compiled style sheet, compiling it on first use.
+     *
+     * @return the style sheet templates
+     */
+    private static synchronized Templates getTemplates() throws TransformerConfigurationException, IOException
+    {
+        if (templates == null)
+        {
+            InputStream xslStream = IXMLParser.class.getResource("styleSheet.xsl").openStream();
+            try
+            {
+                templates = TransformerFactory.newInstance().newTemplates(new StreamSource(xslStream));
+            }
+            finally
+            {
+                xslStream.close();
+            }
+        }
+        return templates;
     }
 
     private IXMLElement searchFirstElement(DOMResult domResult)
@@ -93,9 +138,7 @@ public class XMLParser implements IXMLParser
         {
             SAXSource source = new SAXSource(new InputSource(stream));
             source.setXMLReader(filter);
-            Source xsltSource = new StreamSource(IXMLParser.class.getResource("styleSheet.xsl").openStream());
-            Transformer xformer = TransformerFactory.newInstance().newTransformer(xsltSource);
-            xformer.transform(source, result);
+            getTemplates().newTransformer().transform(source, result);
             filter.applyLN(result);
         } catch (TransformerException e)
         {
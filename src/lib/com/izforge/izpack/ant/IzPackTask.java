@@ -73,6 +73,16 @@ public class IzPackTask extends Task implements PackagerListener
      */
     private int compressionLevel;
 
+    /**
+     * Holds value of property threads.
+     */
+    private int threads;
+
+    /**
+     * Holds value of property streaming.
+     */
+    private boolean streaming;
+
     /**
      * Holds value of property installerType.
      */
@@ -106,6 +116,8 @@ public class IzPackTask extends Task implements PackagerListener
         izPackDir = null;
         compression = "default";
         compressionLevel = -1;
+        threads = 1;
+        streaming = false;
     }
 
     /**
@@ -235,6 +247,8 @@ public class IzPackTask extends Task implements PackagerListener
             throw new BuildException(e1);
         }
         CompilerConfig.setIzpackHome(izPackDir);
+        c.getCompiler().setPackThreads(threads);
+        c.setStreaming(streaming);
 
         if (properties != null)
         {
@@ -370,6 +384,22 @@ public class IzPackTask extends Task implements PackagerListener
         this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * @param threads The number of threads used to write the packs.
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * @param streaming Whether the packs are read one at a time from the install file.
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+
     /**
      * Ant will call this for each &lt;property&gt; tag to the IzPack task.
      */
@@ -0,0 +1,108 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A file inside an archive, added to a pack without extracting it. The packagers read its content
+ * straight from the archive through {@link PackagerHelper#openStream(File, ArchiveRegistry)}. The
+ * path of the file is the path of the archive followed by <code>!/</code> and the name of the
+ * entry.
+ */
+public class ArchiveEntryFile extends File
+{
+    private static final long serialVersionUID = 3257850965504530745L;
+
+    private final File archive;
+
+    private final String entryName;
+
+    private final long size;
+
+    private final long time;
+
+    /**
+     * Creates a file for an entry of an archive.
+     *
+     * @param archive the archive holding the entry
+     * @param entry   the entry, which has to come from a {@link ZipFile} so its size is known
+     */
+    public ArchiveEntryFile(File archive, ZipEntry entry)
+    {
+        super(archive.getPath() + "!/" + entry.getName());
+        this.archive = archive;
+        this.entryName = entry.getName();
+        this.size = entry.getSize();
+        this.time = entry.getTime();
+    }
+
+    /**
+     * Opens a stream to the content of the entry.
+     *
+     * @param archives the archives opened by the packager
+     * @return the stream
+     * @throws IOException if the archive can't be read
+     */
+    public InputStream openStream(ArchiveRegistry archives) throws IOException
+    {
+        ZipFile zipFile = archives.open(archive);
+        ZipEntry entry = zipFile.getEntry(entryName);
+        if (entry == null)
+        {
+            throw new IOException("No entry " + entryName + " in archive " + archive);
+        }
+        return zipFile.getInputStream(entry);
+    }
+
+    public boolean exists()
+    {
+        return true;
+    }
+
+    public boolean isFile()
+    {
+        return true;
+    }
+
+    public boolean isDirectory()
+    {
+        return false;
+    }
+
+    public boolean canRead()
+    {
+        return true;
+    }
+
+    public long length()
+    {
+        return size;
+    }
+
+    public long lastModified()
+    {
+        return time;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+/**
+ * The archives a packager opened to read {@link ArchiveEntryFile}s. Every archive is opened
+ * once when its first entry is read and stays open until {@link #close()} is called at the end
+ * of the packaging.
+ */
+public class ArchiveRegistry
+{
+    /**
+     * The open archives, by archive file.
+     */
+    private final Map<File, ZipFile> openArchives = new HashMap<File, ZipFile>();
+
+    /**
+     * Returns an archive, opening it if it is not open yet.
+     *
+     * @param archive the archive file
+     * @return the open archive
+     * @throws IOException if the archive can't be opened
+     */
+    public synchronized ZipFile open(File archive) throws IOException
+    {
+        ZipFile zipFile = openArchives.get(archive);
+        if (zipFile == null)
+        {
+            zipFile = new ZipFile(archive);
+            openArchives.put(archive, zipFile);
+        }
+        return zipFile;
+    }
+
+    /**
+     * Closes all open archives.
+     */
+    public synchronized void close()
+    {
+        Iterator<ZipFile> iter = openArchives.values().iterator();
+        while (iter.hasNext())
+        {
+            try
+            {
+                iter.next().close();
+            }
+            catch (IOException e)
+            {
+                // nothing to do, the archive was only read
+            }
+        }
+        openArchives.clear();
+    }
+}
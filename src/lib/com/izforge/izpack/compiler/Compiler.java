@@ -100,6 +100,7 @@ public class Compiler extends Thread
 
     private String compr_format;
     private int compr_level;
+    private int packThreads = 1;
     private PackagerListener packagerlistener;
 
     /**
@@ -181,6 +182,7 @@ public class Compiler extends Thread
         {
             packager = PackagerFactory.getPackager(classname);
             packager.initPackCompressor(this.compr_format, this.compr_level);
+            packager.setPackThreads(this.packThreads);
             PackCompressor compressor = packager.getCompressor();
             if (compressor != null)
             {
@@ -198,6 +200,17 @@ public class Compiler extends Thread
         }
     }
 
+    /**
+     * Sets the number of threads the packager uses to write the packs. Has to be called before
+     * the packager is initialized.
+     *
+     * @param threads the number of threads
+     */
+    public void setPackThreads(int threads)
+    {
+        this.packThreads = threads;
+    }
+
     /**
      * Returns the packager listener.
      *
@@ -58,8 +58,8 @@ import java.util.Vector;
 import java.util.jar.JarInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 import org.apache.tools.ant.DirectoryScanner;
+import org.xml.sax.SAXException;
 import com.izforge.izpack.Clude;
 import com.izforge.izpack.CustomData;
 import com.izforge.izpack.ExecutableFile;
@@ -73,6 +73,7 @@ import com.izforge.izpack.UpdateCheck;
 import com.izforge.izpack.adaptator.IXMLElement;
 import com.izforge.izpack.adaptator.IXMLParser;
 import com.izforge.izpack.adaptator.IXMLWriter;
+import com.izforge.izpack.adaptator.impl.StreamingXMLParser;
 import com.izforge.izpack.adaptator.impl.XMLParser;
 import com.izforge.izpack.adaptator.impl.XMLWriter;
 import com.izforge.izpack.compiler.Compiler.CmdlinePackagerListener;
@@ -165,6 +166,14 @@ public class CompilerConfig extends Thread {
      */
     private HashMap<String, List<URL>> packsLangUrlMap = new HashMap<String, List<URL>>();
 
+    /**
+     * Whether the packs are streamed from the installation file instead of being kept in the XML
+     * tree.
+     *
+     * @see #setStreaming(boolean)
+     */
+    private boolean streaming = false;
+
     /**
      * Set the IzPack home directory
      *
@@ -294,6 +303,19 @@ public class CompilerConfig extends Thread {
         return compiler;
     }
 
+    /**
+     * Sets whether the <code>&lt;pack&gt;</code> elements of the installation file are streamed.
+     * If set, the XML tree is built without them and the installation file is read a second time
+     * when the packs are added, handing over one pack element after the other. This bounds the
+     * memory used for huge installation files by the largest pack description. Compiler listeners
+     * don't see the pack elements in the XML tree then.
+     *
+     * @param streaming true to stream the packs
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
     /**
      * Retrieves the packager listener
      */
@@ -634,7 +656,14 @@ public class CompilerConfig extends Thread {
 
         // the actual adding is delegated to addPacksSingle to enable recursive
         // parsing of refpack package definitions
-        addPacksSingle(data);
+        if (streaming)
+        {
+            addPacksSingle(data, addStreamedPacks());
+        }
+        else
+        {
+            addPacksSingle(data);
+        }
 
         compiler.checkDependencies();
         compiler.checkExcludes();
@@ -651,6 +680,18 @@ public class CompilerConfig extends Thread {
      * @throws CompilerException
      */
     private void addPacksSingle(IXMLElement data) throws CompilerException {
+        addPacksSingle(data, 0);
+    }
+
+    /**
+     * Add packs and their contents to the installer without checking the dependencies and includes.
+     *
+     * @param data          The XML data
+     * @param streamedPacks The number of packs already added from the streamed pack elements
+     *
+     * @throws CompilerException
+     */
+    private void addPacksSingle(IXMLElement data, int streamedPacks) throws CompilerException {
         notifyCompilerListener("addPacksSingle", CompilerListener.BEGIN, data);
         // Initialisation
         IXMLElement root = requireChildNamed(data, "packs");
@@ -660,7 +701,7 @@ public class CompilerConfig extends Thread {
         Vector<IXMLElement> refPackElements = root.getChildrenNamed("refpack");
         Vector<IXMLElement> refPackSets = root.getChildrenNamed("refpackset");
         Vector<IXMLElement> ipsPackElements = root.getChildrenNamed("ips-pack");
-        if (packElements.isEmpty() && refPackElements.isEmpty()
+        if (streamedPacks == 0 && packElements.isEmpty() && refPackElements.isEmpty()
 				&& refPackSets.isEmpty() && ipsPackElements.isEmpty())
 		{
 			parseError(root,
@@ -672,472 +713,482 @@ public class CompilerConfig extends Thread {
         Iterator<IXMLElement> packIter = packElements.iterator();
         while (packIter.hasNext())
         {
-            IXMLElement el = packIter.next();
+            addPack(packIter.next(), baseDir);
+        }
 
-            // Trivial initialisations
-            String name = requireAttribute(el, "name");
-            String id = el.getAttribute("id");
-            String packImgId = el.getAttribute("packImgId");
-
-            boolean loose = "true".equalsIgnoreCase(el.getAttribute("loose", "false"));
-            String description = requireChildNamed(el, "description").getContent();
-            boolean required = requireYesNoAttribute(el, "required");
-            String group = el.getAttribute("group");
-            String installGroups = el.getAttribute("installGroups");
-            String excludeGroup = el.getAttribute("excludeGroup");
-            boolean uninstall = "yes".equalsIgnoreCase(el.getAttribute("uninstall", "yes"));
-            String parent = el.getAttribute("parent");
-            boolean hidden = "true".equalsIgnoreCase(el.getAttribute("hidden","false"));
-            
-            String conditionid = el.getAttribute("condition");
-
-            if (required && excludeGroup != null)
-            {
-                parseError(el, "Pack, which has excludeGroup can not be required.", new Exception(
-                        "Pack, which has excludeGroup can not be required."));
-            }
-
-            PackInfo pack = new PackInfo(name, id, description, required, loose, excludeGroup,
-                    uninstall);
-            pack.setOsConstraints(OsConstraint.getOsList(el)); // TODO:
-            pack.setParent(parent);
-            pack.setCondition(conditionid);
-            pack.setHidden(hidden);
+        Iterator<IXMLElement> refPackIter = refPackElements.iterator();
+        while (refPackIter.hasNext())
+        {
+            IXMLElement el = refPackIter.next();
 
-            // unverified
-            // if the pack belongs to an excludeGroup it's not preselected by default
-            if (excludeGroup == null)
+            // get the name of reference xml file
+            String refFileName = requireAttribute(el, "file");
+            String selfcontained = el.getAttribute("selfcontained");
+            boolean isselfcontained = Boolean.valueOf(selfcontained);
+
+            // parsing ref-pack-set file
+            IXMLElement refXMLData = this.readRefPackData(refFileName, isselfcontained);
+
+            Debug.log("Reading refpack from " + refFileName);
+            // Recursively call myself to add all packs and refpacks from the reference XML
+            addPacksSingle(refXMLData);
+        }
+
+        Iterator<IXMLElement> refPackSetIter = refPackSets.iterator();
+        while (refPackSetIter.hasNext())
+        {
+            IXMLElement el = refPackSetIter.next();
+
+            // the directory to scan
+            String dir_attr = this.requireAttribute(el, "dir");
+
+            File dir = new File(dir_attr);
+            if (!dir.isAbsolute())
             {
-                pack.setPreselected(validateYesNoAttribute(el, "preselected", YES));
+                dir = new File(basedir, dir_attr);
             }
-            else
+            if (!dir.isDirectory()) // also tests '.exists()'
             {
-                pack.setPreselected(validateYesNoAttribute(el, "preselected", NO));
+                parseError(el, "Invalid refpackset directory 'dir': " + dir_attr);
             }
 
-            // Set the pack group if specified
-            if (group != null)
+            // include pattern
+            String includeString = this.requireAttribute(el, "includes");
+            String[] includes = includeString.split(", ");
+
+            // scan for refpack files
+            DirectoryScanner ds = new DirectoryScanner();
+            ds.setIncludes(includes);
+            ds.setBasedir(dir);
+            ds.setCaseSensitive(true);
+            ds.scan();
+
+            // loop through all found fils and handle them as normal refpack files
+            String[] files = ds.getIncludedFiles();
+            for (int i = 0; i < files.length; i++)
             {
-                pack.setGroup(group);
+                String refFileName = new File(dir, files[i]).toString();
+
+                // parsing ref-pack-set file
+                IXMLElement refXMLData = this.readRefPackData(refFileName, false);
+
+                // Recursively call myself to add all packs and refpacks from the reference XML
+                addPacksSingle(refXMLData);
             }
-            // Set the pack install groups if specified
-            if (installGroups != null)
+        }
+        
+        addIPSPacksSingle(root);
+
+        notifyCompilerListener("addPacksSingle", CompilerListener.END, data);
+    }
+
+    /**
+     * Adds a pack and its contents to the installer.
+     *
+     * @param el      The pack element
+     * @param baseDir The base directory of the files
+     *
+     * @throws CompilerException
+     */
+    private void addPack(IXMLElement el, File baseDir) throws CompilerException {
+        // Trivial initialisations
+        String name = requireAttribute(el, "name");
+        String id = el.getAttribute("id");
+        String packImgId = el.getAttribute("packImgId");
+
+        boolean loose = "true".equalsIgnoreCase(el.getAttribute("loose", "false"));
+        String description = requireChildNamed(el, "description").getContent();
+        boolean required = requireYesNoAttribute(el, "required");
+        String group = el.getAttribute("group");
+        String installGroups = el.getAttribute("installGroups");
+        String excludeGroup = el.getAttribute("excludeGroup");
+        boolean uninstall = "yes".equalsIgnoreCase(el.getAttribute("uninstall", "yes"));
+        String parent = el.getAttribute("parent");
+        boolean hidden = "true".equalsIgnoreCase(el.getAttribute("hidden","false"));
+        
+        String conditionid = el.getAttribute("condition");
+
+        if (required && excludeGroup != null)
+        {
+            parseError(el, "Pack, which has excludeGroup can not be required.", new Exception(
+                    "Pack, which has excludeGroup can not be required."));
+        }
+
+        PackInfo pack = new PackInfo(name, id, description, required, loose, excludeGroup,
+                uninstall);
+        pack.setOsConstraints(OsConstraint.getOsList(el)); // TODO:
+        pack.setParent(parent);
+        pack.setCondition(conditionid);
+        pack.setHidden(hidden);
+
+        // unverified
+        // if the pack belongs to an excludeGroup it's not preselected by default
+        if (excludeGroup == null)
+        {
+            pack.setPreselected(validateYesNoAttribute(el, "preselected", YES));
+        }
+        else
+        {
+            pack.setPreselected(validateYesNoAttribute(el, "preselected", NO));
+        }
+
+        // Set the pack group if specified
+        if (group != null)
+        {
+            pack.setGroup(group);
+        }
+        // Set the pack install groups if specified
+        if (installGroups != null)
+        {
+            StringTokenizer st = new StringTokenizer(installGroups, ",");
+            while (st.hasMoreTokens())
             {
-                StringTokenizer st = new StringTokenizer(installGroups, ",");
-                while (st.hasMoreTokens())
-                {
-                    String igroup = st.nextToken();
-                    pack.addInstallGroup(igroup);
-                }
+                String igroup = st.nextToken();
+                pack.addInstallGroup(igroup);
             }
+        }
 
-            // Set the packImgId if specified
-            if (packImgId != null)
+        // Set the packImgId if specified
+        if (packImgId != null)
+        {
+            pack.setPackImgId(packImgId);
+        }
+
+        // We get the parsables list
+        Iterator<IXMLElement> iter = el.getChildrenNamed("parsable").iterator();
+        while (iter.hasNext())
+        {
+            IXMLElement p = iter.next();
+            String target = requireAttribute(p, "targetfile");
+            String type = p.getAttribute("type", "plain");
+            String encoding = p.getAttribute("encoding", null);
+            List<OsConstraint> osList = OsConstraint.getOsList(p); // TODO: unverified
+            String condition = p.getAttribute("condition");
+            ParsableFile parsable = new ParsableFile(target, type, encoding, osList);
+            parsable.setCondition(condition);
+            pack.addParsable(parsable);
+        }
+
+        // We get the executables list
+        iter = el.getChildrenNamed("executable").iterator();
+        while (iter.hasNext())
+        {
+            IXMLElement e = iter.next();
+            ExecutableFile executable = new ExecutableFile();
+            String val; // temp value
+            String condition = e.getAttribute("condition");
+            executable.setCondition(condition);
+            executable.path = requireAttribute(e, "targetfile");
+
+            // when to execute this executable
+            val = e.getAttribute("stage", "never");
+            if ("postinstall".equalsIgnoreCase(val))
             {
-                pack.setPackImgId(packImgId);
+                executable.executionStage = ExecutableFile.POSTINSTALL;
             }
-
-            // We get the parsables list
-            Iterator<IXMLElement> iter = el.getChildrenNamed("parsable").iterator();
-            while (iter.hasNext())
+            else if ("uninstall".equalsIgnoreCase(val))
             {
-                IXMLElement p = iter.next();
-                String target = requireAttribute(p, "targetfile");
-                String type = p.getAttribute("type", "plain");
-                String encoding = p.getAttribute("encoding", null);
-                List<OsConstraint> osList = OsConstraint.getOsList(p); // TODO: unverified
-                String condition = p.getAttribute("condition");
-                ParsableFile parsable = new ParsableFile(target, type, encoding, osList);
-                parsable.setCondition(condition);
-                pack.addParsable(parsable);
+                executable.executionStage = ExecutableFile.UNINSTALL;
             }
 
-            // We get the executables list
-            iter = el.getChildrenNamed("executable").iterator();
-            while (iter.hasNext())
+            // type of this executable
+            val = e.getAttribute("type", "bin");
+            if ("jar".equalsIgnoreCase(val))
             {
-                IXMLElement e = iter.next();
-                ExecutableFile executable = new ExecutableFile();
-                String val; // temp value
-                String condition = e.getAttribute("condition");
-                executable.setCondition(condition);
-                executable.path = requireAttribute(e, "targetfile");
+                executable.type = ExecutableFile.JAR;
+                executable.mainClass = e.getAttribute("class"); // executable
+                // class
+            }
 
-                // when to execute this executable
-                val = e.getAttribute("stage", "never");
-                if ("postinstall".equalsIgnoreCase(val))
-                {
-                    executable.executionStage = ExecutableFile.POSTINSTALL;
-                }
-                else if ("uninstall".equalsIgnoreCase(val))
-                {
-                    executable.executionStage = ExecutableFile.UNINSTALL;
-                }
+            // what to do if execution fails
+            val = e.getAttribute("failure", "ask");
+            if ("abort".equalsIgnoreCase(val))
+            {
+                executable.onFailure = ExecutableFile.ABORT;
+            }
+            else if ("warn".equalsIgnoreCase(val))
+            {
+                executable.onFailure = ExecutableFile.WARN;
+            }
+            else if ("ignore".equalsIgnoreCase(val))
+            {
+                executable.onFailure = ExecutableFile.IGNORE;
+            }
 
-                // type of this executable
-                val = e.getAttribute("type", "bin");
-                if ("jar".equalsIgnoreCase(val))
-                {
-                    executable.type = ExecutableFile.JAR;
-                    executable.mainClass = e.getAttribute("class"); // executable
-                    // class
-                }
+            // whether to keep the executable after executing it
+            val = e.getAttribute("keep");
+            executable.keepFile = "true".equalsIgnoreCase(val);
 
-                // what to do if execution fails
-                val = e.getAttribute("failure", "ask");
-                if ("abort".equalsIgnoreCase(val))
-                {
-                    executable.onFailure = ExecutableFile.ABORT;
-                }
-                else if ("warn".equalsIgnoreCase(val))
-                {
-                    executable.onFailure = ExecutableFile.WARN;
-                }
-                else if ("ignore".equalsIgnoreCase(val))
+            // get arguments for this executable
+            IXMLElement args = e.getFirstChildNamed("args");
+            if (null != args)
+            {
+                Iterator<IXMLElement> argIterator = args.getChildrenNamed("arg").iterator();
+                while (argIterator.hasNext())
                 {
-                    executable.onFailure = ExecutableFile.IGNORE;
+                    IXMLElement arg = argIterator.next();
+                    executable.argList.add(requireAttribute(arg, "value"));
                 }
+            }
 
-                // whether to keep the executable after executing it
-                val = e.getAttribute("keep");
-                executable.keepFile = "true".equalsIgnoreCase(val);
+            executable.osList = OsConstraint.getOsList(e); // TODO:
+            // unverified
 
-                // get arguments for this executable
-                IXMLElement args = e.getFirstChildNamed("args");
-                if (null != args)
-                {
-                    Iterator<IXMLElement> argIterator = args.getChildrenNamed("arg").iterator();
-                    while (argIterator.hasNext())
-                    {
-                        IXMLElement arg = argIterator.next();
-                        executable.argList.add(requireAttribute(arg, "value"));
-                    }
-                }
+            pack.addExecutable(executable);
+        }
 
-                executable.osList = OsConstraint.getOsList(e); // TODO:
-                // unverified
+        // We get the files list
+        iter = el.getChildrenNamed("file").iterator();
+        while (iter.hasNext())
+        {
+            IXMLElement f = iter.next();
+            String src = requireAttribute(f, "src");
+            String targetdir = requireAttribute(f, "targetdir");
+            List<OsConstraint> osList = OsConstraint.getOsList(f); // TODO: unverified
+            int override = getOverrideValue(f);
+            Map additionals = getAdditionals(f);
+            boolean unpack = "true".equalsIgnoreCase(f.getAttribute("unpack"));
+            String condition = f.getAttribute("condition");
 
-                pack.addExecutable(executable);
+            File file = new File(src);
+            if (!file.isAbsolute())
+            {
+                file = new File(basedir, src);
             }
 
-            // We get the files list
-            iter = el.getChildrenNamed("file").iterator();
-            while (iter.hasNext())
+            try
             {
-                IXMLElement f = iter.next();
-                String src = requireAttribute(f, "src");
-                String targetdir = requireAttribute(f, "targetdir");
-                List<OsConstraint> osList = OsConstraint.getOsList(f); // TODO: unverified
-                int override = getOverrideValue(f);
-                Map additionals = getAdditionals(f);
-                boolean unpack = "true".equalsIgnoreCase(f.getAttribute("unpack"));
-                String condition = f.getAttribute("condition");
-
-                File file = new File(src);
-                if (!file.isAbsolute())
-                {
-                    file = new File(basedir, src);
-                }
-
-                try
+                if (unpack)
                 {
-                    if (unpack)
-                    {
-                        addArchiveContent(baseDir, file, targetdir, osList, override, pack,
-                                additionals, condition);
-                    }
-                    else
-                    {
-                        addRecursively(baseDir, file, targetdir, osList, override, pack,
-                                additionals, condition);
-                    }
+                    addArchiveContent(baseDir, file, targetdir, osList, override, pack,
+                            additionals, condition);
                 }
-                catch (Exception x)
+                else
                 {
-                    parseError(f, x.getMessage(), x);
+                    addRecursively(baseDir, file, targetdir, osList, override, pack,
+                            additionals, condition);
                 }
             }
+            catch (Exception x)
+            {
+                parseError(f, x.getMessage(), x);
+            }
+        }
 
-            // We get the singlefiles list
-            iter = el.getChildrenNamed("singlefile").iterator();
-            while (iter.hasNext())
+        // We get the singlefiles list
+        iter = el.getChildrenNamed("singlefile").iterator();
+        while (iter.hasNext())
+        {
+            IXMLElement f = iter.next();
+            String src = requireAttribute(f, "src");
+            String target = requireAttribute(f, "target");
+            List<OsConstraint> osList = OsConstraint.getOsList(f); // TODO: unverified
+            int override = getOverrideValue(f);
+            Map additionals = getAdditionals(f);
+            String condition = f.getAttribute("condition");
+            File file = new File(src);
+            if (!file.isAbsolute())
             {
-                IXMLElement f = iter.next();
-                String src = requireAttribute(f, "src");
-                String target = requireAttribute(f, "target");
-                List<OsConstraint> osList = OsConstraint.getOsList(f); // TODO: unverified
-                int override = getOverrideValue(f);
-                Map additionals = getAdditionals(f);
-                String condition = f.getAttribute("condition");
-                File file = new File(src);
-                if (!file.isAbsolute())
-                {
-                    file = new File(basedir, src);
-                }
+                file = new File(basedir, src);
+            }
 
-                try
-                {
-                    pack.addFile(baseDir, file, target, osList, override, additionals, condition);
-                }
-                catch (FileNotFoundException x)
-                {
-                    parseError(f, x.getMessage(), x);
-                }
+            try
+            {
+                pack.addFile(baseDir, file, target, osList, override, additionals, condition);
             }
+            catch (FileNotFoundException x)
+            {
+                parseError(f, x.getMessage(), x);
+            }
+        }
 
-            // We get the fileset list
-            iter = el.getChildrenNamed("fileset").iterator();
-            while (iter.hasNext())
+        // We get the fileset list
+        iter = el.getChildrenNamed("fileset").iterator();
+        while (iter.hasNext())
+        {
+            IXMLElement f = iter.next();
+            String dir_attr = requireAttribute(f, "dir");
+
+            File dir = new File(dir_attr);
+            if (!dir.isAbsolute())
             {
-                IXMLElement f = iter.next();
-                String dir_attr = requireAttribute(f, "dir");
+                dir = new File(basedir, dir_attr);
+            }
+            if (!dir.isDirectory()) // also tests '.exists()'
+            {
+                parseError(f, "Invalid directory 'dir': " + dir_attr);
+            }
 
-                File dir = new File(dir_attr);
-                if (!dir.isAbsolute())
-                {
-                    dir = new File(basedir, dir_attr);
-                }
-                if (!dir.isDirectory()) // also tests '.exists()'
-                {
-                    parseError(f, "Invalid directory 'dir': " + dir_attr);
-                }
+            boolean casesensitive = validateYesNoAttribute(f, "casesensitive", YES);
+            boolean defexcludes = validateYesNoAttribute(f, "defaultexcludes", YES);
+            String targetdir = requireAttribute(f, "targetdir");
+            List<OsConstraint> osList = OsConstraint.getOsList(f); // TODO: unverified
+            int override = getOverrideValue(f);
+            Map additionals = getAdditionals(f);
+            String condition = f.getAttribute("condition");
 
-                boolean casesensitive = validateYesNoAttribute(f, "casesensitive", YES);
-                boolean defexcludes = validateYesNoAttribute(f, "defaultexcludes", YES);
-                String targetdir = requireAttribute(f, "targetdir");
-                List<OsConstraint> osList = OsConstraint.getOsList(f); // TODO: unverified
-                int override = getOverrideValue(f);
-                Map additionals = getAdditionals(f);
-                String condition = f.getAttribute("condition");
-
-                // get includes and excludes
-                Vector<IXMLElement> xcludesList = null;
-                String[] includes = null;
-                xcludesList = f.getChildrenNamed("include");
-                if (!xcludesList.isEmpty())
-                {
-                    includes = new String[xcludesList.size()];
-                    for (int j = 0; j < xcludesList.size(); j++)
-                    {
-                        IXMLElement xclude = xcludesList.get(j);
-                        includes[j] = requireAttribute(xclude, "name");
-                    }
-                }
-                String[] excludes = null;
-                xcludesList = f.getChildrenNamed("exclude");
-                if (!xcludesList.isEmpty())
+            // get includes and excludes
+            Vector<IXMLElement> xcludesList = null;
+            String[] includes = null;
+            xcludesList = f.getChildrenNamed("include");
+            if (!xcludesList.isEmpty())
+            {
+                includes = new String[xcludesList.size()];
+                for (int j = 0; j < xcludesList.size(); j++)
                 {
-                    excludes = new String[xcludesList.size()];
-                    for (int j = 0; j < xcludesList.size(); j++)
-                    {
-                        IXMLElement xclude = xcludesList.get(j);
-                        excludes[j] = requireAttribute(xclude, "name");
-                    }
+                    IXMLElement xclude = xcludesList.get(j);
+                    includes[j] = requireAttribute(xclude, "name");
                 }
-
-                // parse additional fileset attributes "includes" and "excludes"
-                String[] toDo = new String[]{"includes", "excludes"};
-                // use the existing containers filled from include and exclude
-                // and add the includes and excludes to it
-                String[][] containers = new String[][]{includes, excludes};
-                for (int j = 0; j < toDo.length; ++j)
+            }
+            String[] excludes = null;
+            xcludesList = f.getChildrenNamed("exclude");
+            if (!xcludesList.isEmpty())
+            {
+                excludes = new String[xcludesList.size()];
+                for (int j = 0; j < xcludesList.size(); j++)
                 {
-                    String inex = f.getAttribute(toDo[j]);
-                    if (inex != null && inex.length() > 0)
-                    { // This is the same "splitting" as ant PatternSet do ...
-                        StringTokenizer tok = new StringTokenizer(inex, ", ", false);
-                        int newSize = tok.countTokens();
-                        int k = 0;
-                        String[] nCont = null;
-                        if (containers[j] != null && containers[j].length > 0)
-                        { // old container exist; create a new which can hold
-                            // all values
-                            // and copy the old stuff to the front
-                            newSize += containers[j].length;
-                            nCont = new String[newSize];
-                            for (; k < containers[j].length; ++k)
-                            {
-                                nCont[k] = containers[j][k];
-                            }
-                        }
-                        if (nCont == null) // No container for old values
-                        // created,
-                        // create a new one.
-                        {
-                            nCont = new String[newSize];
-                        }
-                        for (; k < newSize; ++k)
-                        // Fill the new one or expand the existent container
+                    IXMLElement xclude = xcludesList.get(j);
+                    excludes[j] = requireAttribute(xclude, "name");
+                }
+            }
+
+            // parse additional fileset attributes "includes" and "excludes"
+            String[] toDo = new String[]{"includes", "excludes"};
+            // use the existing containers filled from include and exclude
+            // and add the includes and excludes to it
+            String[][] containers = new String[][]{includes, excludes};
+            for (int j = 0; j < toDo.length; ++j)
+            {
+                String inex = f.getAttribute(toDo[j]);
+                if (inex != null && inex.length() > 0)
+                { // This is the same "splitting" as ant PatternSet do ...
+                    StringTokenizer tok = new StringTokenizer(inex, ", ", false);
+                    int newSize = tok.countTokens();
+                    int k = 0;
+                    String[] nCont = null;
+                    if (containers[j] != null && containers[j].length > 0)
+                    { // old container exist; create a new which can hold
+                        // all values
+                        // and copy the old stuff to the front
+                        newSize += containers[j].length;
+                        nCont = new String[newSize];
+                        for (; k < containers[j].length; ++k)
                         {
-                            nCont[k] = tok.nextToken();
+                            nCont[k] = containers[j][k];
                         }
-                        containers[j] = nCont;
-                    }
-                }
-                includes = containers[0]; // push the new includes to the
-                // local var
-                excludes = containers[1]; // push the new excludes to the
-                // local var
-
-                // scan and add fileset
-                DirectoryScanner ds = new DirectoryScanner();
-                ds.setIncludes(includes);
-                ds.setExcludes(excludes);
-                if (defexcludes)
-                {
-                    ds.addDefaultExcludes();
-                }
-                ds.setBasedir(dir);
-                ds.setCaseSensitive(casesensitive);
-                ds.scan();
-
-                String[] files = ds.getIncludedFiles();
-                String[] dirs = ds.getIncludedDirectories();
-
-                // Directory scanner has done recursion, add files and
-                // directories
-                for (String file : files)
-                {
-                    try
-                    {
-                        String target = new File(targetdir, file).getPath();
-                        pack.addFile(baseDir, new File(dir, file), target, osList, override,
-                                additionals, condition);
-                    }
-                    catch (FileNotFoundException x)
-                    {
-                        parseError(f, x.getMessage(), x);
                     }
-                }
-                for (String dir1 : dirs)
-                {
-                    try
+                    if (nCont == null) // No container for old values
+                    // created,
+                    // create a new one.
                     {
-                        String target = new File(targetdir, dir1).getPath();
-                        pack.addFile(baseDir, new File(dir, dir1), target, osList, override,
-                                additionals, condition);
+                        nCont = new String[newSize];
                     }
-                    catch (FileNotFoundException x)
+                    for (; k < newSize; ++k)
+                    // Fill the new one or expand the existent container
                     {
-                        parseError(f, x.getMessage(), x);
+                        nCont[k] = tok.nextToken();
                     }
+                    containers[j] = nCont;
                 }
             }
+            includes = containers[0]; // push the new includes to the
+            // local var
+            excludes = containers[1]; // push the new excludes to the
+            // local var
 
-            // get the updatechecks list
-            iter = el.getChildrenNamed("updatecheck").iterator();
-            while (iter.hasNext())
+            // scan and add fileset
+            DirectoryScanner ds = new DirectoryScanner();
+            ds.setIncludes(includes);
+            ds.setExcludes(excludes);
+            if (defexcludes)
             {
-                IXMLElement f = iter.next();
-
-                String casesensitive = f.getAttribute("casesensitive");
+                ds.addDefaultExcludes();
+            }
+            ds.setBasedir(dir);
+            ds.setCaseSensitive(casesensitive);
+            ds.scan();
 
-                // get includes and excludes
-                ArrayList<String> includesList = new ArrayList<String>();
-                ArrayList<String> excludesList = new ArrayList<String>();
+            String[] files = ds.getIncludedFiles();
+            String[] dirs = ds.getIncludedDirectories();
 
-                // get includes and excludes
-                Iterator<IXMLElement> include_it = f.getChildrenNamed("include").iterator();
-                while (include_it.hasNext())
+            // Directory scanner has done recursion, add files and
+            // directories
+            for (String file : files)
+            {
+                try
                 {
-                    IXMLElement inc_el = include_it.next();
-                    includesList.add(requireAttribute(inc_el, "name"));
+                    String target = new File(targetdir, file).getPath();
+                    pack.addFile(baseDir, new File(dir, file), target, osList, override,
+                            additionals, condition);
                 }
-
-                Iterator<IXMLElement> exclude_it = f.getChildrenNamed("exclude").iterator();
-                while (exclude_it.hasNext())
+                catch (FileNotFoundException x)
                 {
-                    IXMLElement excl_el = exclude_it.next();
-                    excludesList.add(requireAttribute(excl_el, "name"));
+                    parseError(f, x.getMessage(), x);
                 }
-
-                pack.addUpdateCheck(new UpdateCheck(includesList, excludesList, casesensitive));
-            }
-            // We get the dependencies
-            iter = el.getChildrenNamed("depends").iterator();
-            while (iter.hasNext())
-            {
-                IXMLElement dep = iter.next();
-                String depName = requireAttribute(dep, "packname");
-                pack.addDependency(depName);
-
             }
-
-            iter = el.getChildrenNamed("validator").iterator();
-            while (iter.hasNext())
+            for (String dir1 : dirs)
             {
-                IXMLElement validator = iter.next();
-                pack.addValidator(requireContent(validator));
+                try
+                {
+                    String target = new File(targetdir, dir1).getPath();
+                    pack.addFile(baseDir, new File(dir, dir1), target, osList, override,
+                            additionals, condition);
+                }
+                catch (FileNotFoundException x)
+                {
+                    parseError(f, x.getMessage(), x);
+                }
             }
-
-            // We add the pack
-            compiler.addPack(pack);
         }
 
-        Iterator<IXMLElement> refPackIter = refPackElements.iterator();
-        while (refPackIter.hasNext())
+        // get the updatechecks list
+        iter = el.getChildrenNamed("updatecheck").iterator();
+        while (iter.hasNext())
         {
-            IXMLElement el = refPackIter.next();
+            IXMLElement f = iter.next();
 
-            // get the name of reference xml file
-            String refFileName = requireAttribute(el, "file");
-            String selfcontained = el.getAttribute("selfcontained");
-            boolean isselfcontained = Boolean.valueOf(selfcontained);
+            String casesensitive = f.getAttribute("casesensitive");
 
-            // parsing ref-pack-set file
-            IXMLElement refXMLData = this.readRefPackData(refFileName, isselfcontained);
-
-            Debug.log("Reading refpack from " + refFileName);
-            // Recursively call myself to add all packs and refpacks from the reference XML
-            addPacksSingle(refXMLData);
-        }
-
-        Iterator<IXMLElement> refPackSetIter = refPackSets.iterator();
-        while (refPackSetIter.hasNext())
-        {
-            IXMLElement el = refPackSetIter.next();
+            // get includes and excludes
+            ArrayList<String> includesList = new ArrayList<String>();
+            ArrayList<String> excludesList = new ArrayList<String>();
 
-            // the directory to scan
-            String dir_attr = this.requireAttribute(el, "dir");
-
-            File dir = new File(dir_attr);
-            if (!dir.isAbsolute())
+            // get includes and excludes
+            Iterator<IXMLElement> include_it = f.getChildrenNamed("include").iterator();
+            while (include_it.hasNext())
             {
-                dir = new File(basedir, dir_attr);
+                IXMLElement inc_el = include_it.next();
+                includesList.add(requireAttribute(inc_el, "name"));
             }
-            if (!dir.isDirectory()) // also tests '.exists()'
+
+            Iterator<IXMLElement> exclude_it = f.getChildrenNamed("exclude").iterator();
+            while (exclude_it.hasNext())
             {
-                parseError(el, "Invalid refpackset directory 'dir': " + dir_attr);
+                IXMLElement excl_el = exclude_it.next();
+                excludesList.add(requireAttribute(excl_el, "name"));
             }
 
-            // include pattern
-            String includeString = this.requireAttribute(el, "includes");
-            String[] includes = includeString.split(", ");
-
-            // scan for refpack files
-            DirectoryScanner ds = new DirectoryScanner();
-            ds.setIncludes(includes);
-            ds.setBasedir(dir);
-            ds.setCaseSensitive(true);
-            ds.scan();
-
-            // loop through all found fils and handle them as normal refpack files
-            String[] files = ds.getIncludedFiles();
-            for (int i = 0; i < files.length; i++)
-            {
-                String refFileName = new File(dir, files[i]).toString();
+            pack.addUpdateCheck(new UpdateCheck(includesList, excludesList, casesensitive));
+        }
+        // We get the dependencies
+        iter = el.getChildrenNamed("depends").iterator();
+        while (iter.hasNext())
+        {
+            IXMLElement dep = iter.next();
+            String depName = requireAttribute(dep, "packname");
+            pack.addDependency(depName);
 
-                // parsing ref-pack-set file
-                IXMLElement refXMLData = this.readRefPackData(refFileName, false);
+        }
 
-                // Recursively call myself to add all packs and refpacks from the reference XML
-                addPacksSingle(refXMLData);
-            }
+        iter = el.getChildrenNamed("validator").iterator();
+        while (iter.hasNext())
+        {
+            IXMLElement validator = iter.next();
+            pack.addValidator(requireContent(validator));
         }
-        
-        addIPSPacksSingle(root);
 
-        notifyCompilerListener("addPacksSingle", CompilerListener.END, data);
+        // We add the pack
+        compiler.addPack(pack);
     }
 
 	/**
@@ -1508,40 +1559,27 @@ public class CompilerConfig extends Thread {
                                      List<OsConstraint> osList, int override, PackInfo pack, Map additionals,
                                      String condition) throws IOException {
 
-        FileInputStream fin = new FileInputStream(archive);
-        ZipInputStream zin = new ZipInputStream(fin);
-        while (true)
+        // the entries are read straight from the archive when the packs are written
+        ZipFile zip = new ZipFile(archive);
+        try
         {
-            ZipEntry zentry = zin.getNextEntry();
-            if (zentry == null)
-            {
-                break;
-            }
-            if (zentry.isDirectory())
-            {
-                continue;
-            }
-
-            try
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements())
             {
-                File temp = File.createTempFile("izpack", null);
-                temp.deleteOnExit();
-
-                FileOutputStream out = new FileOutputStream(temp);
-                PackagerHelper.copyStream(zin, out);
-                out.close();
+                ZipEntry zentry = entries.nextElement();
+                if (zentry.isDirectory())
+                {
+                    continue;
+                }
 
-                pack.addFile(baseDir, temp, targetdir + "/" + zentry.getName(), osList, override,
-                        additionals, condition);
-            }
-            catch (IOException e)
-            {
-                throw new IOException("Couldn't create temporary file for " + zentry.getName()
-                        + " in archive " + archive + " (" + e.getMessage() + ")");
+                pack.addFile(baseDir, new ArchiveEntryFile(archive, zentry),
+                        targetdir + "/" + zentry.getName(), osList, override, additionals, condition);
             }
-
         }
-        fin.close();
+        finally
+        {
+            zip.close();
+        }
     }
 
     /**
@@ -2314,7 +2352,19 @@ public class CompilerConfig extends Thread {
     protected IXMLElement getXMLTree() throws CompilerException, IOException {
         IXMLParser parser = new XMLParser();
         IXMLElement data = null;
-        if (filename != null)
+        if (streaming && (filename != null || installText != null))
+        {
+            if (filename != null)
+            {
+                File file = new File(filename).getAbsoluteFile();
+                assertIsNormalReadableFile(file, "Configuration file");
+                // add izpack built in property
+                compiler.setProperty("izpack.file", file.toString());
+            }
+            // the packs are dropped here and streamed by addStreamedPacks
+            data = parseStreaming(new StreamingXMLParser(null, "installation", "packs", "pack"));
+        }
+        else if (filename != null)
         {
             File file = new File(filename).getAbsoluteFile();
             assertIsNormalReadableFile(file, "Configuration file");
@@ -2344,6 +2394,70 @@ public class CompilerConfig extends Thread {
         return data;
     }
 
+    /**
+     * Adds the pack elements of the installation file one at a time, reading the file again.
+     *
+     * @return the number of added packs
+     *
+     * @throws CompilerException For problems reading the installation file or adding the packs
+     */
+    private int addStreamedPacks() throws CompilerException {
+        final File baseDir = new File(basedir);
+        final int[] count = new int[1];
+        StreamingXMLParser parser = new StreamingXMLParser(new StreamingXMLParser.ElementHandler()
+        {
+            public void handleElement(IXMLElement element) throws Exception
+            {
+                // the properties were only replaced in the tree without the packs
+                substituteAllProperties(element);
+                addPack(element, baseDir);
+                count[0]++;
+            }
+        }, "installation", "packs", "pack");
+        parser.setRetainTree(false);
+        try
+        {
+            parseStreaming(parser);
+        }
+        catch (IOException e)
+        {
+            throw new CompilerException("Error reading the packs: " + e.getMessage(), e);
+        }
+        return count[0];
+    }
+
+    /**
+     * Parses the installation file or text with the given streaming parser.
+     *
+     * @param parser the parser
+     *
+     * @return the retained XML tree
+     *
+     * @throws CompilerException For problems with the installation file or the streamed elements
+     * @throws IOException       for errors reading the installation file
+     */
+    private IXMLElement parseStreaming(StreamingXMLParser parser)
+            throws CompilerException, IOException {
+        InputStream in = filename != null ? new FileInputStream(filename)
+                : new ByteArrayInputStream(installText.getBytes());
+        try
+        {
+            return parser.parse(in);
+        }
+        catch (SAXException e)
+        {
+            if (e.getException() instanceof CompilerException)
+            {
+                throw (CompilerException) e.getException();
+            }
+            throw new CompilerException(e.getMessage(), e);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
     protected int getOverrideValue(IXMLElement f) throws CompilerException {
         int override = PackFile.OVERRIDE_UPDATE;
 
@@ -2736,6 +2850,8 @@ public class CompilerConfig extends Thread {
             String output;
             String compr_format = "default";
             int compr_level = -1;
+            int threads = 1;
+            boolean streaming = false;
 
             // First check
             int nArgs = args.length;
@@ -2769,6 +2885,12 @@ public class CompilerConfig extends Thread {
                 System.out
                         .println("   -l (compression-level)  : indicates the level for the used compression format");
                 System.out.println("                if supported. Only integer are valid\n");
+                System.out
+                        .println("   -t (threads)  : indicates the number of threads used to write the packs");
+                System.out.println("                default is 1\n");
+                System.out
+                        .println("   -s (streaming)  : reads the packs one at a time from the xml file, to compile");
+                System.out.println("                huge xml files with less memory\n");
 
                 System.out
                         .println("   When using vm option -DSTACKTRACE=true there is all kind of debug info ");
@@ -2849,6 +2971,20 @@ public class CompilerConfig extends Thread {
                                     throw new Exception("compression level argument missing");
                                 }
                                 break;
+                            case 't':
+                                if ((pos + 1) < nArgs)
+                                {
+                                    pos++;
+                                    threads = Integer.parseInt(args[pos]);
+                                }
+                                else
+                                {
+                                    throw new Exception("threads argument missing");
+                                }
+                                break;
+                            case 's':
+                                streaming = true;
+                                break;
                             case 'h':
                                 if ((pos + 1) < nArgs)
                                 {
@@ -2879,6 +3015,8 @@ public class CompilerConfig extends Thread {
                 System.out.println("-> Kind        : " + kind);
                 System.out.println("-> Compression : " + compr_format);
                 System.out.println("-> Compr. level: " + compr_level);
+                System.out.println("-> Threads     : " + threads);
+                System.out.println("-> Streaming   : " + streaming);
                 System.out.println("-> IzPack home : " + home);
                 System.out.println("");
 
@@ -2888,6 +3026,8 @@ public class CompilerConfig extends Thread {
                 CmdlinePackagerListener listener = new CmdlinePackagerListener();
                 CompilerConfig compiler = new CompilerConfig(filename, base, kind, output,
                         compr_format, compr_level, listener, null);
+                compiler.getCompiler().setPackThreads(threads);
+                compiler.setStreaming(streaming);
                 compiler.executeCompiler();
 
                 // Waits
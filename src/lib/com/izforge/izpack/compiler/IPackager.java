@@ -193,6 +193,13 @@ public interface IPackager
      */
     public abstract void initPackCompressor(String compr_format, int compr_level) throws CompilerException;
 
+    /**
+     * Sets the number of threads used to write the packs if supported by the packager.
+     *
+     * @param threads the number of threads, one writes the packs sequentially
+     */
+    public abstract void setPackThreads(int threads);
+
     /**
      * Adds configuration information to the packager.
      *
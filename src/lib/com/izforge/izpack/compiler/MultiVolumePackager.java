@@ -20,6 +20,7 @@ package com.izforge.izpack.compiler;
 import com.izforge.izpack.Pack;
 import com.izforge.izpack.PackFile;
 import com.izforge.izpack.XPackFile;
+import com.izforge.izpack.io.ChunkIndex;
 import com.izforge.izpack.io.FileSpanningOutputStream;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.FileUtil;
@@ -117,11 +118,18 @@ public class MultiVolumePackager extends PackagerBase
 
         sendStart();
 
-        writeInstaller();
+        try
+        {
+            writeInstaller();
 
-        // Pack File Data may be written to separate jars
-        String packfile = baseFile.getParent() + File.separator + INSTALLER_PAK_NAME;
-        writePacks(new File(packfile));
+            // Pack File Data may be written to separate jars
+            String packfile = baseFile.getParent() + File.separator + INSTALLER_PAK_NAME;
+            writePacks(new File(packfile));
+        }
+        finally
+        {
+            archives.close();
+        }
 
         // Finish up. closeAlways is a hack for pack compressions other than
         // default. Some of it (e.g. BZip2) closes the slave of it also.
@@ -145,12 +153,14 @@ public class MultiVolumePackager extends PackagerBase
         String classname = this.getClass().getName();
         String sizeprop = classname + ".volumesize";
         String freespaceprop = classname + ".firstvolumefreespace";
+        String chunksizeprop = classname + ".chunksize";
 
         if (this.configdata == null)
         {
             // no configdata given, set default values
             this.variables.setProperty(sizeprop, Long.toString(FileSpanningOutputStream.DEFAULT_VOLUME_SIZE));
             this.variables.setProperty(freespaceprop, Long.toString(FileSpanningOutputStream.DEFAULT_ADDITIONAL_FIRST_VOLUME_FREE_SPACE_SIZE));
+            this.variables.setProperty(chunksizeprop, Long.toString(FileSpanningOutputStream.DEFAULT_CHUNK_SIZE));
         }
         else
         {
@@ -158,7 +168,9 @@ public class MultiVolumePackager extends PackagerBase
             String volumesize = configdata.getAttribute("volumesize", Long.toString(FileSpanningOutputStream.DEFAULT_VOLUME_SIZE));
             String freespace = configdata.getAttribute("firstvolumefreespace", Long.toString(FileSpanningOutputStream.DEFAULT_ADDITIONAL_FIRST_VOLUME_FREE_SPACE_SIZE));
             this.variables.setProperty(sizeprop, volumesize);
+            String chunksize = configdata.getAttribute("chunksize", Long.toString(FileSpanningOutputStream.DEFAULT_CHUNK_SIZE));
             this.variables.setProperty(freespaceprop, freespace);
+            this.variables.setProperty(chunksizeprop, chunksize);
         }
     }
 
@@ -319,9 +331,11 @@ public class MultiVolumePackager extends PackagerBase
         String classname = this.getClass().getName();
         String volumesize = this.getVariables().getProperty(classname + ".volumesize");
         String extraspace = this.getVariables().getProperty(classname + ".firstvolumefreespace");
+        String chunksize = this.getVariables().getProperty(classname + ".chunksize");
 
         long volumesizel = FileSpanningOutputStream.DEFAULT_VOLUME_SIZE;
         long extraspacel = FileSpanningOutputStream.DEFAULT_ADDITIONAL_FIRST_VOLUME_FREE_SPACE_SIZE;
+        long chunksizel = FileSpanningOutputStream.DEFAULT_CHUNK_SIZE;
 
         if (volumesize != null)
         {
@@ -331,11 +345,17 @@ public class MultiVolumePackager extends PackagerBase
         {
             extraspacel = Long.parseLong(extraspace);
         }
+        if (chunksize != null)
+        {
+            chunksizel = Long.parseLong(chunksize);
+        }
         Debug.trace("Volumesize: " + volumesizel);
         Debug.trace("Extra space on first volume: " + extraspacel);
+        Debug.trace("Chunksize: " + chunksizel);
         FileSpanningOutputStream fout = new FileSpanningOutputStream(primaryfile.getParent()
                 + File.separator + primaryfile.getName() + ".pak", volumesizel);
         fout.setFirstvolumefreespacesize(extraspacel);
+        fout.setChunkSize(chunksizel);
 
         int packNumber = 0;
         for (PackInfo aPacksList : packsList)
@@ -383,7 +403,7 @@ public class MultiVolumePackager extends PackagerBase
                     // write out the filepointer
                     int volumecountbeforewrite = fout.getVolumeCount();
 
-                    FileInputStream inStream = new FileInputStream(file);
+                    InputStream inStream = PackagerHelper.openStream(file, archives);
                     long bytesWritten = copyStream(inStream, fout);
                     fout.flush();
 
@@ -458,6 +478,13 @@ public class MultiVolumePackager extends PackagerBase
         ObjectOutputStream out = new ObjectOutputStream(primaryJarStream);
         out.writeInt(volumes);
         out.writeUTF(volumename);
+        // the chunk index is optional, older installers end here
+        ChunkIndex chunks = fout.getChunkIndex();
+        if (chunks != null)
+        {
+            Debug.trace("Written " + chunks.size() + " chunks");
+            chunks.writeTo(out);
+        }
         out.flush();
         primaryJarStream.closeEntry();
 
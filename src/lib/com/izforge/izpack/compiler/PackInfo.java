@@ -83,6 +83,16 @@ public class PackInfo implements Serializable
      */
     private List executables = new ArrayList();
 
+    /**
+     * The files of the Pack by target path, to find the files of executables.
+     */
+    private Map<String, List<PackFile>> filesByTarget = new HashMap<String, List<PackFile>>();
+
+    /**
+     * The target paths of the executables whose files are made executable when unpacked.
+     */
+    private Set<String> executableTargets = new HashSet<String>();
+
     /**
      * Update check specifications in this Pack.
      */
@@ -257,7 +267,18 @@ public class PackInfo implements Serializable
         PackFile packFile = new PackFile(baseDir, file, targetfile, osList, override, additionals);
         packFile.setLoosePackInfo(pack.loose);
         packFile.setCondition(condition);
+        if (executableTargets.contains(packFile.getTargetPath()))
+        {
+            packFile.setExecutable(true);
+        }
         files.put(packFile, file);
+        List<PackFile> targetFiles = filesByTarget.get(packFile.getTargetPath());
+        if (targetFiles == null)
+        {
+            targetFiles = new ArrayList<PackFile>();
+            filesByTarget.put(packFile.getTargetPath(), targetFiles);
+        }
+        targetFiles.add(packFile);
     }
 
     /**
@@ -300,6 +321,24 @@ public class PackInfo implements Serializable
     public void addExecutable(ExecutableFile executable)
     {
         executables.add(executable);
+        // Lets the unpacker make the file of a binary executable executable right away, instead
+        // of changing its permissions after the installation. This is only done for executables
+        // without conditions and OS constraints, the others are still handled when the
+        // executables are processed.
+        if (executable.type == ExecutableFile.BIN && executable.getCondition() == null
+                && (executable.osList == null || executable.osList.isEmpty()))
+        {
+            String target = executable.path.replace('\\', '/');
+            executableTargets.add(target);
+            List<PackFile> targetFiles = filesByTarget.get(target);
+            if (targetFiles != null)
+            {
+                for (PackFile packFile : targetFiles)
+                {
+                    packFile.setExecutable(true);
+                }
+            }
+        }
     }
 
     /**
@@ -31,6 +31,11 @@ import com.izforge.izpack.util.FileUtil;
 import java.io.*;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Pack200;
@@ -55,6 +60,11 @@ public class Packager extends PackagerBase
      */
     private com.izforge.izpack.util.JarOutputStream primaryJarStream;
 
+    /**
+     * Whether files with the same content are stored only once, regardless of their path.
+     */
+    private boolean deduplicate = false;
+
     /**
      * The constructor.
      *
@@ -116,7 +126,14 @@ public class Packager extends PackagerBase
 
         sendStart();
 
-        writeInstaller();
+        try
+        {
+            writeInstaller();
+        }
+        finally
+        {
+            archives.close();
+        }
 
         // Finish up. closeAlways is a hack for pack compressions other than
         // default. Some of it (e.g. BZip2) closes the slave of it also.
@@ -214,104 +231,155 @@ public class Packager extends PackagerBase
         final int num = packsList.size();
         sendMsg("Writing " + num + " Pack" + (num > 1 ? "s" : "") + " into installer");
 
-        // Map to remember pack number and bytes offsets of back references
-        Map<File, Object[]> storedFiles = new HashMap<File, Object[]>();
-
         // Pack200 files map
         Map<Integer, File> pack200Map = new HashMap<Integer, File>();
-        int pack200Counter = 0;
 
         // Force UTF-8 encoding in order to have proper ZipEntry names.
         primaryJarStream.setEncoding("utf-8");
 
-        // First write the serialized files and file metadata data for each pack
-        // while counting bytes.
+        // First decide which files are stored in which pack and which ones are
+        // shared between packs, so that the packs can be written independently.
+        StoredFiles storedFiles = new StoredFiles();
+        layoutPacks(storedFiles, pack200Map);
 
-        int packNumber = 0;
-        Iterator<PackInfo> packIter = packsList.iterator();
-        IXMLElement root = new XMLElementImpl("packs");
-
-        while (packIter.hasNext())
+        // Then write the serialized files and file metadata data for each pack
+        // while counting bytes. With the default compression the jar stream deflates
+        // the packs itself, so only a pack compressor gains from the workers.
+        if (packThreads > 1 && num > 1 && !compressor.useStandardCompression())
         {
-            PackInfo packInfo = packIter.next();
-            Pack pack = packInfo.getPack();
-            pack.nbytes = 0;
-            if ((pack.id == null) || (pack.id.length() == 0))
+            writePacksConcurrently(storedFiles);
+        }
+        else
+        {
+            int packNumber = 0;
+            Iterator<PackInfo> packIter = packsList.iterator();
+            while (packIter.hasNext())
             {
-                pack.id = pack.name;
-            }
+                PackInfo packInfo = packIter.next();
+                Pack pack = packInfo.getPack();
+                sendMsg("Writing Pack " + packNumber + ": " + pack.name, PackagerListener.MSG_VERBOSE);
 
-            // create a pack specific jar if required
-            com.izforge.izpack.util.JarOutputStream packStream = primaryJarStream;
-            if (packJarsSeparate)
-            {
-                // See installer.Unpacker#getPackAsStream for the counterpart
-                String name = baseFile.getName() + ".pack-" + pack.id + ".jar";
-                packStream = getJarOutputStream(name);
+                com.izforge.izpack.util.JarOutputStream packStream = openPackEntry(pack);
+                OutputStream comprStream = packStream;
+                if (!compressor.useStandardCompression())
+                {
+                    comprStream = compressor.getOutputStream(packStream);
+                }
+                writePackData(packInfo, comprStream, storedFiles);
+                if (!compressor.useStandardCompression())
+                {
+                    comprStream.close();
+                }
+                closePackEntry(packStream);
+
+                packNumber++;
             }
-            OutputStream comprStream = packStream;
+        }
 
-            sendMsg("Writing Pack " + packNumber + ": " + pack.name, PackagerListener.MSG_VERBOSE);
+        writeSharedData(storedFiles);
 
-            // Retrieve the correct output stream
-            org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry("packs/pack-" + pack.id);
-            if (!compressor.useStandardCompression())
-            {
-                entry.setMethod(ZipEntry.STORED);
-                entry.setComment(compressor.getCompressionFormatSymbols()[0]);
-                // We must set the entry before we get the compressed stream
-                // because some writes initialize data (e.g. bzip2).
-                packStream.putNextEntry(entry);
-                packStream.flush(); // flush before we start counting
-                comprStream = compressor.getOutputStream(packStream);
-            }
-            else
+        IXMLElement root = new XMLElementImpl("packs");
+        Iterator<PackInfo> packIter = packsList.iterator();
+        while (packIter.hasNext())
+        {
+            Pack pack = packIter.next().getPack();
+            IXMLElement child = new XMLElementImpl("pack",root);
+            child.setAttribute("nbytes", Long.toString(pack.nbytes));
+            child.setAttribute("name", pack.name);
+            if (pack.id != null)
             {
-                int level = compressor.getCompressionLevel();
-                if (level >= 0 && level < 10)
-                {
-                    packStream.setLevel(level);
-                }
-                packStream.putNextEntry(entry);
-                packStream.flush(); // flush before we start counting
+                child.setAttribute("id", pack.id);
             }
+            root.addChild(child);
+        }
+
+        // Now that we know sizes, write pack metadata to primary jar.
+        primaryJarStream.putNextEntry(new org.apache.tools.zip.ZipEntry("packs.info"));
+        ObjectOutputStream out = new ObjectOutputStream(primaryJarStream);
+        out.writeInt(packsList.size());
+
+        Iterator<PackInfo> i = packsList.iterator();
+        while (i.hasNext())
+        {
+            PackInfo pack = i.next();
+            out.writeObject(pack.getPack());
+        }
+        out.flush();
+        primaryJarStream.closeEntry();
+
+        // Pack200 files
+        Pack200.Packer packer = createAgressivePack200Packer();
+        for (Integer key : pack200Map.keySet())
+        {
+            File file = pack200Map.get(key);
+            primaryJarStream.putNextEntry(new org.apache.tools.zip.ZipEntry("packs/pack200-" + key));
+            JarFile jar = new JarFile(file);
+            packer.pack(jar, primaryJarStream);
+            jar.close();
+            primaryJarStream.closeEntry();
+        }
+    }
 
-            ByteCountingOutputStream dos = new ByteCountingOutputStream(comprStream);
-            ObjectOutputStream objOut = new ObjectOutputStream(dos);
+    /**
+     * Walks all packs in order and decides for each pack file whether its data is stored in the
+     * pack, handed over to pack200 or shared with other packs. Files which are used by more than
+     * one pack file are put into a shared data entry of their own, which the unpacker can open
+     * directly instead of reading through the pack that contained them first. If
+     * {@link #deduplicate} is set, files are identified by their content instead of their path.
+     * Nothing is written here, this only fixes the layout so that the packs themselves can be
+     * written in any order.
+     *
+     * @param storedFiles the registry of stored files to fill in
+     * @param pack200Map  the map receiving the pack200 jars keyed by their pack200 number
+     */
+    private void layoutPacks(StoredFiles storedFiles, Map<Integer, File> pack200Map)
+            throws IOException
+    {
+        int pack200Counter = 0;
 
-            // We write the actual pack files
-            objOut.writeInt(packInfo.getPackFiles().size());
+        Iterator<PackInfo> packIter = packsList.iterator();
+        while (packIter.hasNext())
+        {
+            PackInfo packInfo = packIter.next();
+            Pack pack = packInfo.getPack();
+            if ((pack.id == null) || (pack.id.length() == 0))
+            {
+                pack.id = pack.name;
+            }
 
             Iterator iter = packInfo.getPackFiles().iterator();
             while (iter.hasNext())
             {
                 boolean addFile = !pack.loose;
-                boolean pack200 = false;
                 PackFile pf = (PackFile) iter.next();
                 File file = packInfo.getFile(pf);
 
-                if (file.getName().toLowerCase().endsWith(".jar") && info.isPack200Compression() && isNotSignedJar(file))
+                if (!(file instanceof ArchiveEntryFile) && file.getName().toLowerCase().endsWith(".jar")
+                        && info.isPack200Compression() && isNotSignedJar(file))
                 {
                     pf.setPack200Jar(true);
-                    pack200 = true;
                 }
 
-                // use a back reference if file was in previous pack, and in
+                Object key = file;
+                if (deduplicate && !pack.loose && !pf.isDirectory())
+                {
+                    // A pack200 jar is stored as its pack200 number, so it must
+                    // never share the data of a plain file with the same content.
+                    key = PackagerHelper.digest(file, archives) + (pf.isPack200Jar() ? ":p200" : "");
+                }
+
+                // use a shared entry if file was in previous pack, and in
                 // same jar
-                Object[] info = storedFiles.get(file);
-                if (info != null && !packJarsSeparate)
+                if (storedFiles.isStored(key) && !packJarsSeparate)
                 {
-                    pf.setPreviousPackFileRef((String) info[0], (Long) info[1]);
+                    storedFiles.addReference(pf, key);
                     addFile = false;
                 }
 
-                objOut.writeObject(pf); // base info
-
                 if (addFile && !pf.isDirectory())
                 {
-                    long pos = dos.getByteCount(); // get the position
-
-                    if (pack200)
+                    Integer pack200Number = null;
+                    if (pf.isPack200Jar())
                     {
                         /*
                          * Warning!
@@ -321,103 +389,334 @@ public class Packager extends PackagerBase
                          *
                          * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
                          */
+                        pack200Number = pack200Counter;
                         pack200Map.put(pack200Counter, file);
-                        objOut.writeInt(pack200Counter);
                         pack200Counter = pack200Counter + 1;
                     }
-                    else
-                    {
-                        FileInputStream inStream = new FileInputStream(file);
-                        long bytesWritten = PackagerHelper.copyStream(inStream, objOut);
-                        inStream.close();
-                        if (bytesWritten != pf.length())
-                        {
-                            throw new IOException("File size mismatch when reading " + file);
-                        }
-                    }
-
-                    storedFiles.put(file, new Object[]{pack.id, pos});
+                    storedFiles.addStore(pf, key, file, pack200Number);
                 }
-
-                // even if not written, it counts towards pack size
-                pack.nbytes += pf.length();
             }
+        }
 
-            // Write out information about parsable files
-            objOut.writeInt(packInfo.getParsables().size());
-            iter = packInfo.getParsables().iterator();
-            while (iter.hasNext())
+        long savedBytes = storedFiles.shareReferencedFiles();
+        if (savedBytes > 0)
+        {
+            sendMsg(storedFiles.getSharedFiles().size() + " files shared between packs are stored only once, saving "
+                    + savedBytes + " bytes");
+        }
+    }
+
+    /**
+     * Writes the serialized pack files, their data and the parsable, executable and update check
+     * informations of one pack into the given stream. The layout must have been computed by
+     * {@link #layoutPacks(StoredFiles, Map)} before.
+     *
+     * @param packInfo    the pack to write
+     * @param comprStream the (possibly compressing) stream to write into; it is flushed but not
+     *                    closed
+     * @param storedFiles the registry of stored files
+     */
+    private void writePackData(PackInfo packInfo, OutputStream comprStream, StoredFiles storedFiles)
+            throws IOException
+    {
+        Pack pack = packInfo.getPack();
+        pack.nbytes = 0;
+
+        ByteCountingOutputStream dos = new ByteCountingOutputStream(comprStream);
+        ObjectOutputStream objOut = new ObjectOutputStream(dos);
+
+        // We write the actual pack files
+        objOut.writeInt(packInfo.getPackFiles().size());
+
+        Iterator iter = packInfo.getPackFiles().iterator();
+        while (iter.hasNext())
+        {
+            PackFile pf = (PackFile) iter.next();
+            File file = packInfo.getFile(pf);
+
+            objOut.writeObject(pf); // base info
+
+            if (storedFiles.isStore(pf))
             {
-                objOut.writeObject(iter.next());
+                writeFileData(file, pf, storedFiles.getPack200Number(pf), objOut);
             }
 
-            // Write out information about executable files
-            objOut.writeInt(packInfo.getExecutables().size());
-            iter = packInfo.getExecutables().iterator();
-            while (iter.hasNext())
+            // even if not written, it counts towards pack size
+            pack.nbytes += pf.length();
+        }
+
+        // Write out information about parsable files
+        objOut.writeInt(packInfo.getParsables().size());
+        iter = packInfo.getParsables().iterator();
+        while (iter.hasNext())
+        {
+            objOut.writeObject(iter.next());
+        }
+
+        // Write out information about executable files
+        objOut.writeInt(packInfo.getExecutables().size());
+        iter = packInfo.getExecutables().iterator();
+        while (iter.hasNext())
+        {
+            objOut.writeObject(iter.next());
+        }
+
+        // Write out information about updatecheck files
+        objOut.writeInt(packInfo.getUpdateChecks().size());
+        iter = packInfo.getUpdateChecks().iterator();
+        while (iter.hasNext())
+        {
+            objOut.writeObject(iter.next());
+        }
+
+        objOut.flush();
+    }
+
+    /**
+     * Writes the data of a file, or its pack200 number if it is packed separately.
+     *
+     * @param file          the source file
+     * @param pf            the pack file describing the file
+     * @param pack200Number the pack200 number or null
+     * @param objOut        the stream to write to
+     */
+    private void writeFileData(File file, PackFile pf, Integer pack200Number, ObjectOutputStream objOut)
+            throws IOException
+    {
+        if (pack200Number != null)
+        {
+            objOut.writeInt(pack200Number);
+        }
+        else
+        {
+            InputStream inStream = PackagerHelper.openStream(file, archives);
+            long bytesWritten = PackagerHelper.copyStream(inStream, objOut);
+            inStream.close();
+            if (bytesWritten != pf.length())
             {
-                objOut.writeObject(iter.next());
+                throw new IOException("File size mismatch when reading " + file);
             }
+        }
+    }
 
-            // Write out information about updatecheck files
-            objOut.writeInt(packInfo.getUpdateChecks().size());
-            iter = packInfo.getUpdateChecks().iterator();
-            while (iter.hasNext())
+    /**
+     * Writes the data of the files shared between packs, each into an entry
+     * <code>packs/shared-&lt;number&gt;</code> of the primary jar. The entries are compressed like
+     * the packs and contain an object stream header followed by the data, the same way a file
+     * is stored in a pack.
+     *
+     * @param storedFiles the registry of stored files
+     */
+    private void writeSharedData(StoredFiles storedFiles) throws Exception
+    {
+        List<File> sharedFiles = storedFiles.getSharedFiles();
+        if (sharedFiles.isEmpty())
+        {
+            return;
+        }
+        sendMsg("Writing " + sharedFiles.size() + " files shared between packs", PackagerListener.MSG_VERBOSE);
+
+        for (int i = 0; i < sharedFiles.size(); i++)
+        {
+            File file = sharedFiles.get(i);
+            openEntry(primaryJarStream, "packs/shared-" + i);
+            OutputStream comprStream = primaryJarStream;
+            if (!compressor.useStandardCompression())
             {
-                objOut.writeObject(iter.next());
+                comprStream = compressor.getOutputStream(primaryJarStream);
             }
-
-            // Cleanup
+            ObjectOutputStream objOut = new ObjectOutputStream(comprStream);
+            writeFileData(file, storedFiles.getSharedPackFile(i), storedFiles.getSharedPack200Number(i), objOut);
             objOut.flush();
             if (!compressor.useStandardCompression())
             {
                 comprStream.close();
             }
+            primaryJarStream.closeEntry();
+        }
+    }
 
-            packStream.closeEntry();
+    /**
+     * Writes the packs using a pool of {@link #packThreads} workers. Each worker serializes and
+     * compresses one pack into a temporary segment; the segments are then appended to the jar
+     * in pack order on the calling thread, so the installer is identical to the one written
+     * sequentially. This is only used with a pack compressor (e.g. bzip2): with the default
+     * compression the deflating is done by the single jar stream, so the workers would only add
+     * a round trip through the temporary segments.
+     *
+     * @param storedFiles the registry of stored files
+     */
+    private void writePacksConcurrently(final StoredFiles storedFiles) throws Exception
+    {
+        sendMsg("Using " + packThreads + " threads to write the packs", PackagerListener.MSG_VERBOSE);
 
-            // close pack specific jar if required
-            if (packJarsSeparate)
+        ExecutorService executor = Executors.newFixedThreadPool(packThreads);
+        List<Future<File>> segments = new ArrayList<Future<File>>();
+        try
+        {
+            Iterator<PackInfo> packIter = packsList.iterator();
+            while (packIter.hasNext())
             {
-                packStream.closeAlways();
+                final PackInfo packInfo = packIter.next();
+                segments.add(executor.submit(new Callable<File>()
+                {
+                    public File call() throws Exception
+                    {
+                        return writePackSegment(packInfo, storedFiles);
+                    }
+                }));
             }
+            executor.shutdown();
 
-            IXMLElement child = new XMLElementImpl("pack",root);
-            child.setAttribute("nbytes", Long.toString(pack.nbytes));
-            child.setAttribute("name", pack.name);
-            if (pack.id != null)
+            for (int packNumber = 0; packNumber < segments.size(); packNumber++)
             {
-                child.setAttribute("id", pack.id);
+                File segment;
+                try
+                {
+                    segment = segments.get(packNumber).get();
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Exception)
+                    {
+                        throw (Exception) cause;
+                    }
+                    throw e;
+                }
+
+                Pack pack = packsList.get(packNumber).getPack();
+                sendMsg("Writing Pack " + packNumber + ": " + pack.name, PackagerListener.MSG_VERBOSE);
+
+                com.izforge.izpack.util.JarOutputStream packStream = openPackEntry(pack);
+                FileInputStream in = new FileInputStream(segment);
+                try
+                {
+                    PackagerHelper.copyStream(in, packStream);
+                }
+                finally
+                {
+                    in.close();
+                    segment.delete();
+                }
+                closePackEntry(packStream);
             }
-            root.addChild(child);
+        }
+        finally
+        {
+            executor.shutdownNow();
+            for (Future<File> future : segments)
+            {
+                if (future.isDone() && !future.isCancelled())
+                {
+                    try
+                    {
+                        future.get().delete();
+                    }
+                    catch (ExecutionException e)
+                    {
+                        // Nothing was written by this worker.
+                    }
+                }
+            }
+        }
+    }
 
-            packNumber++;
+    /**
+     * Writes one pack, compressed with the pack compressor, into a temporary segment file.
+     *
+     * @param packInfo    the pack to write
+     * @param storedFiles the registry of stored files
+     * @return the segment file
+     */
+    private File writePackSegment(PackInfo packInfo, StoredFiles storedFiles) throws Exception
+    {
+        File segment = File.createTempFile("izpack-pack-", ".tmp");
+        segment.deleteOnExit();
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(segment));
+        try
+        {
+            OutputStream comprStream = compressor.getOutputStream(out);
+            writePackData(packInfo, comprStream, storedFiles);
+            comprStream.close();
+        }
+        catch (Exception e)
+        {
+            out.close();
+            segment.delete();
+            throw e;
         }
+        return segment;
+    }
 
-        // Now that we know sizes, write pack metadata to primary jar.
-        primaryJarStream.putNextEntry(new org.apache.tools.zip.ZipEntry("packs.info"));
-        ObjectOutputStream out = new ObjectOutputStream(primaryJarStream);
-        out.writeInt(packsList.size());
+    /**
+     * Starts the zip entry for the given pack, either in the primary jar or in a pack specific
+     * jar.
+     *
+     * @param pack the pack
+     * @return the jar stream positioned at the start of the entry data
+     */
+    private com.izforge.izpack.util.JarOutputStream openPackEntry(Pack pack) throws IOException
+    {
+        // create a pack specific jar if required
+        com.izforge.izpack.util.JarOutputStream packStream = primaryJarStream;
+        if (packJarsSeparate)
+        {
+            // See installer.Unpacker#getPackAsStream for the counterpart
+            String name = baseFile.getName() + ".pack-" + pack.id + ".jar";
+            packStream = getJarOutputStream(name);
+        }
 
-        Iterator<PackInfo> i = packsList.iterator();
-        while (i.hasNext())
+        openEntry(packStream, "packs/pack-" + pack.id);
+        return packStream;
+    }
+
+    /**
+     * Starts a zip entry holding pack data, set up for the pack compressor in use.
+     *
+     * @param packStream the jar stream
+     * @param name       the name of the entry
+     */
+    private void openEntry(com.izforge.izpack.util.JarOutputStream packStream, String name)
+            throws IOException
+    {
+        // Retrieve the correct output stream
+        org.apache.tools.zip.ZipEntry entry = new org.apache.tools.zip.ZipEntry(name);
+        if (!compressor.useStandardCompression())
         {
-            PackInfo pack = i.next();
-            out.writeObject(pack.getPack());
+            entry.setMethod(ZipEntry.STORED);
+            entry.setComment(compressor.getCompressionFormatSymbols()[0]);
+            // We must set the entry before we get the compressed stream
+            // because some writes initialize data (e.g. bzip2).
+            packStream.putNextEntry(entry);
+            packStream.flush(); // flush before we start counting
         }
-        out.flush();
-        primaryJarStream.closeEntry();
+        else
+        {
+            int level = compressor.getCompressionLevel();
+            if (level >= 0 && level < 10)
+            {
+                packStream.setLevel(level);
+            }
+            packStream.putNextEntry(entry);
+            packStream.flush(); // flush before we start counting
+        }
+    }
 
-        // Pack200 files
-        Pack200.Packer packer = createAgressivePack200Packer();
-        for (Integer key : pack200Map.keySet())
+    /**
+     * Closes the zip entry of a pack and the pack specific jar if one is used.
+     *
+     * @param packStream the stream returned by {@link #openPackEntry(Pack)}
+     */
+    private void closePackEntry(com.izforge.izpack.util.JarOutputStream packStream)
+            throws IOException
+    {
+        packStream.closeEntry();
+
+        // close pack specific jar if required
+        if (packJarsSeparate)
         {
-            File file = pack200Map.get(key);
-            primaryJarStream.putNextEntry(new org.apache.tools.zip.ZipEntry("packs/pack200-" + key));
-            JarFile jar = new JarFile(file);
-            packer.pack(jar, primaryJarStream);
-            jar.close();
-            primaryJarStream.closeEntry();
+            packStream.closeAlways();
         }
     }
 
@@ -562,7 +861,132 @@ public class Packager extends PackagerBase
     */
     public void addConfigurationInformation(IXMLElement data)
     {
-        // TODO Auto-generated method stub
+        deduplicate = "true".equalsIgnoreCase(data.getAttribute("deduplicate", "false"));
+        String threads = data.getAttribute("threads");
+        if (threads != null)
+        {
+            try
+            {
+                setPackThreads(Integer.parseInt(threads));
+            }
+            catch (NumberFormatException e)
+            {
+                sendMsg("Ignoring invalid number of threads: " + threads, PackagerListener.MSG_WARN);
+            }
+        }
+    }
 
+    /**
+     * Keeps track of where the data of every source file is stored: either in the pack of the
+     * first pack file using it, or in a shared entry if several pack files use the same file.
+     * Files are identified by a key, which is the file itself or a digest of its content.
+     */
+    private static class StoredFiles
+    {
+        /**
+         * The pack file storing the file of each key.
+         */
+        private final Map<Object, PackFile> owners = new HashMap<Object, PackFile>();
+
+        /**
+         * The file of each key.
+         */
+        private final Map<Object, File> files = new HashMap<Object, File>();
+
+        /**
+         * The pack files which data is stored in their pack, mapped to their pack200 number or
+         * null.
+         */
+        private final Map<PackFile, Integer> stores = new HashMap<PackFile, Integer>();
+
+        /**
+         * The pack files using an already stored file, by key.
+         */
+        private final Map<Object, List<PackFile>> references = new LinkedHashMap<Object, List<PackFile>>();
+
+        /**
+         * The pack files owning the shared files, in the order of the shared entries.
+         */
+        private final List<PackFile> shared = new ArrayList<PackFile>();
+
+        /**
+         * The files shared between packs, in the order of the shared entries.
+         */
+        private final List<File> sharedFiles = new ArrayList<File>();
+
+        private final List<Integer> sharedPack200Numbers = new ArrayList<Integer>();
+
+        public boolean isStored(Object key)
+        {
+            return owners.containsKey(key);
+        }
+
+        public void addStore(PackFile pf, Object key, File file, Integer pack200Number)
+        {
+            owners.put(key, pf);
+            files.put(key, file);
+            stores.put(pf, pack200Number);
+        }
+
+        public void addReference(PackFile pf, Object key)
+        {
+            List<PackFile> list = references.get(key);
+            if (list == null)
+            {
+                list = new ArrayList<PackFile>();
+                references.put(key, list);
+            }
+            list.add(pf);
+        }
+
+        /**
+         * Moves every file which is referenced more than once into a shared entry.
+         *
+         * @return the number of bytes which are not stored again thanks to the sharing
+         */
+        public long shareReferencedFiles()
+        {
+            long savedBytes = 0;
+            for (Map.Entry<Object, List<PackFile>> entry : references.entrySet())
+            {
+                PackFile owner = owners.get(entry.getKey());
+                int id = shared.size();
+                shared.add(owner);
+                sharedFiles.add(files.get(entry.getKey()));
+                sharedPack200Numbers.add(stores.remove(owner));
+                owner.setSharedDataId(id);
+                for (PackFile pf : entry.getValue())
+                {
+                    pf.setSharedDataId(id);
+                    savedBytes += owner.length();
+                }
+            }
+            return savedBytes;
+        }
+
+        public boolean isStore(PackFile pf)
+        {
+            return stores.containsKey(pf);
+        }
+
+        public Integer getPack200Number(PackFile pf)
+        {
+            return stores.get(pf);
+        }
+
+        public List<File> getSharedFiles()
+        {
+            return sharedFiles;
+        }
+
+        public PackFile getSharedPackFile(int id)
+        {
+            return shared.get(id);
+        }
+
+        public Integer getSharedPack200Number(int id)
+        {
+            return sharedPack200Numbers.get(id);
+        }
     }
 }
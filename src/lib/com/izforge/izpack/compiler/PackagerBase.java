@@ -135,11 +135,21 @@ public abstract class PackagerBase implements IPackager
      */
     protected PackCompressor compressor;
 
+    /**
+     * The number of threads used to write the packs
+     */
+    protected int packThreads = 1;
+
     /**
      * Files which are always written into the container file
      */
     protected HashMap<FilterOutputStream, HashSet<String>> alreadyWrittenFiles = new HashMap<FilterOutputStream, HashSet<String>>();
 
+    /**
+     * The archives opened to read the archive entries added to the packs
+     */
+    protected final ArchiveRegistry archives = new ArchiveRegistry();
+
     private List<InstallerRequirement> installerrequirements;
 
     /**
@@ -330,6 +340,14 @@ public abstract class PackagerBase implements IPackager
         compressor.setCompressionLevel(compr_level);
     }
 
+    /* (non-Javadoc)
+     * @see com.izforge.izpack.compiler.IPackager#setPackThreads(int)
+     */
+    public void setPackThreads(int threads)
+    {
+        packThreads = Math.max(1, threads);
+    }
+
     /* (non-Javadoc)
      * @see com.izforge.izpack.compiler.IPackager#setGUIPrefs(com.izforge.izpack.GUIPrefs)
      */
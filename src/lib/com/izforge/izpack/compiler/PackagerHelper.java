@@ -22,10 +22,14 @@
 
 package com.izforge.izpack.compiler;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import com.izforge.izpack.util.IoHelper;
+
 /**
  * Helper class for packager classes
  *
@@ -53,4 +57,42 @@ public class PackagerHelper
         }
         return bytesCopied;
     }
+
+    /**
+     * Opens a stream to the content of a file to be packed. The file may be an entry of an archive.
+     *
+     * @param file     the file to read
+     * @param archives the archives opened by the packager
+     * @return the stream
+     * @throws IOException if an I/O error occurs
+     */
+    public static InputStream openStream(File file, ArchiveRegistry archives) throws IOException
+    {
+        if (file instanceof ArchiveEntryFile)
+        {
+            return ((ArchiveEntryFile) file).openStream(archives);
+        }
+        return new FileInputStream(file);
+    }
+
+    /**
+     * Computes the SHA-1 digest of the content of a file.
+     *
+     * @param file     the file to read
+     * @param archives the archives opened by the packager
+     * @return the digest as hexadecimal string
+     * @throws IOException if an I/O error occurs
+     */
+    public static String digest(File file, ArchiveRegistry archives) throws IOException
+    {
+        InputStream in = openStream(file, archives);
+        try
+        {
+            return IoHelper.digest(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
 }
@@ -276,13 +276,17 @@ public abstract class PackCompressorBase implements PackCompressor
             slave = new BufferedOutputStream(slave);
         }
         Object[] params = resolveConstructorParams(slave);
-        if (constructor == null)
+        // The packager may ask for streams from several threads at once.
+        synchronized (this)
         {
-            loadClass(getEncoderClassName());
-        }
-        if (constructor == null)
-        {
-            return (null);
+            if (constructor == null)
+            {
+                loadClass(getEncoderClassName());
+            }
+            if (constructor == null)
+            {
+                return (null);
+            }
         }
         Object instance = null;
         instance = constructor.newInstance(params);
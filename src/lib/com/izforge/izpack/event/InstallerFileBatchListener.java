@@ -0,0 +1,44 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.event;
+
+import com.izforge.izpack.PackFile;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * An installer listener which is informed about the installed files in batches instead of one by
+ * one. It is implemented in addition to {@link InstallerListener}. A listener which returns false
+ * from {@link InstallerListener#isFileListener()} only gets the batches, so the unpacker doesn't
+ * have to call any listener for single files and directories.
+ */
+public interface InstallerFileBatchListener
+{
+    /**
+     * This method will be called from the unpacker after a number of files were installed, and at
+     * the latest before {@link InstallerListener#afterPack} of the pack of the files is called.
+     *
+     * @param files     the just installed files, in the order they were installed
+     * @param packFiles the corresponding PackFile objects
+     * @throws Exception
+     */
+    void afterFiles(List<File> files, List<PackFile> packFiles) throws Exception;
+}
@@ -49,6 +49,7 @@ import com.izforge.izpack.adaptator.impl.XMLParser;
 import com.izforge.izpack.util.AbstractUIHandler;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.Housekeeper;
+import com.izforge.izpack.util.InstallManifest;
 import com.izforge.izpack.util.OsConstraint;
 import com.sun.pkg.client.Image.FmriState;
 
@@ -155,6 +156,12 @@ public class AutomatedInstaller extends InstallerBase
             logWriter.flush();
             outJar.closeEntry();
 
+            // We write the files manifest
+            outJar.putNextEntry(new ZipEntry(InstallManifest.RESOURCE));
+            InstallManifest.write(outJar, this.idata.getInstallPath(), files, udata.getFilePacks(),
+                    udata.getFileDigests());
+            outJar.closeEntry();
+
 			/*
 			 * We write the IPS packages log.
 			 */
@@ -34,6 +34,12 @@ import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class does alle the work for compiling sources.
@@ -64,6 +70,8 @@ public class CompileWorker implements Runnable
 
     private static final String ECLIPSE_COMPILER_CLASS = "org.eclipse.jdt.internal.compiler.batch.Main";
 
+    private static final String INTEGRATED_COMPILER_NAME = "Integrated Java Compiler";
+
     private VariableSubstitutor vs;
 
     private IXMLElement spec;
@@ -281,6 +289,10 @@ public class CompileWorker implements Runnable
         {
             this.compilerList.add("javac");
             this.compilerList.add("jikes");
+            if (IntegratedJavaCompiler.isAvailable())
+            {
+                this.compilerList.add(INTEGRATED_COMPILER_NAME);
+            }
         }
 
         if (this.compilerArgumentsList.size() == 0)
@@ -385,6 +397,11 @@ public class CompileWorker implements Runnable
             args.add(tokenizer.nextToken());
         }
 
+        if (this.compilerToUse.equalsIgnoreCase(INTEGRATED_COMPILER_NAME))
+        {
+            return compileJobsIntegrated(args);
+        }
+
         Iterator<CompilationJob> job_it = this.jobs.iterator();
 
         this.handler.startAction("Compilation", this.jobs.size());
@@ -422,6 +439,118 @@ public class CompileWorker implements Runnable
         return new CompileResult();
     }
 
+    /**
+     * Perform the compilation with the compiler of the running JVM.
+     * <p/>
+     * The jobs are compiled in parallel, except for jobs with the sources of earlier jobs in their
+     * class path, which wait for those jobs to finish. Progress and errors are reported in the
+     * order of the jobs from this thread.
+     */
+    private CompileResult compileJobsIntegrated(final ArrayList<String> args)
+    {
+        this.handler.startAction("Compilation", this.jobs.size());
+
+        if (!IntegratedJavaCompiler.isAvailable())
+        {
+            List<String> cmdline = new ArrayList<String>();
+            cmdline.add(INTEGRATED_COMPILER_NAME);
+            CompileResult result = new CompileResult(this.idata.langpack
+                    .getString("CompilePanel.error.compilernotfound"), cmdline, "", "");
+            this.handler.handleCompileError(result);
+            return result;
+        }
+
+        int threads = Math.min(this.jobs.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        // each thread keeps its compiler, so the class path is only read once per thread
+        final List<IntegratedJavaCompiler> compilers = Collections
+                .synchronizedList(new ArrayList<IntegratedJavaCompiler>());
+        final ThreadLocal<IntegratedJavaCompiler> threadCompiler = new ThreadLocal<IntegratedJavaCompiler>()
+        {
+            protected IntegratedJavaCompiler initialValue()
+            {
+                IntegratedJavaCompiler compiler = new IntegratedJavaCompiler();
+                compilers.add(compiler);
+                return compiler;
+            }
+        };
+
+        try
+        {
+            List<Future<CompileResult>> results = new ArrayList<Future<CompileResult>>();
+            for (int i = 0; i < this.jobs.size(); i++)
+            {
+                final CompilationJob job = this.jobs.get(i);
+                final List<Future<CompileResult>> dependencies = new ArrayList<Future<CompileResult>>();
+                for (int j = 0; j < i; j++)
+                {
+                    if (job.dependsOn(this.jobs.get(j)))
+                    {
+                        dependencies.add(results.get(j));
+                    }
+                }
+                results.add(executor.submit(new Callable<CompileResult>()
+                {
+                    public CompileResult call() throws Exception
+                    {
+                        for (Future<CompileResult> dependency : dependencies)
+                        {
+                            dependency.get();
+                        }
+                        return job.performIntegrated(threadCompiler.get(), args);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < this.jobs.size(); i++)
+            {
+                CompilationJob job = this.jobs.get(i);
+                this.handler.nextStep(job.getName(), job.getSize(), i);
+
+                CompileResult job_result = results.get(i).get();
+
+                this.handler.progress(job.getSize(), job.getName());
+                if (!job_result.isSuccess())
+                {
+                    this.handler.handleCompileError(job_result);
+                    if (!job_result.isContinue())
+                    {
+                        return job_result;
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            return new CompileResult(e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            return new CompileResult(cause instanceof Exception ? (Exception) cause : e);
+        }
+        finally
+        {
+            executor.shutdownNow();
+            try
+            {
+                // running compilations can't be interrupted
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Debug.trace("interrupted while waiting for the compilations to stop");
+            }
+            for (IntegratedJavaCompiler compiler : compilers)
+            {
+                compiler.close();
+            }
+        }
+
+        Debug.trace("compilation finished.");
+        return new CompileResult();
+    }
+
     private CompilationJob collectJobsRecursive(IXMLElement node, ArrayList classpath)
             throws Exception
     {
@@ -883,6 +1012,139 @@ public class CompileWorker implements Runnable
             return new CompileResult();
         }
 
+        /**
+         * Checks whether this job needs the classes of another job. The classes are compiled next
+         * to their sources, so this is the case if a class path entry of this job contains a source
+         * of the other job.
+         *
+         * @param job the other job
+         * @return true if this job has to be compiled after the other job
+         */
+        public boolean dependsOn(CompilationJob job)
+        {
+            Iterator cp_it = this.classpath.iterator();
+            while (cp_it.hasNext())
+            {
+                String cp = new File((String) cp_it.next()).getAbsolutePath();
+                if (!cp.endsWith(File.separator))
+                {
+                    cp += File.separator;
+                }
+                for (File file : job.files)
+                {
+                    if (file.getAbsolutePath().startsWith(cp))
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Perform this job with the compiler of the running JVM. The job is skipped if the class
+         * files of all sources are newer than the sources. Otherwise all sources are compiled, so
+         * that sources referring to each other see the same state. Errors are not reported to the
+         * listener, this is left to the caller.
+         *
+         * @param compiler  The compiler to use.
+         * @param arguments The compiler arguments to use.
+         * @return The result.
+         */
+        public CompileResult performIntegrated(IntegratedJavaCompiler compiler,
+                                               ArrayList<String> arguments)
+        {
+            Debug.trace("starting job " + this.name);
+
+            boolean outdated = false;
+            for (File file : this.files)
+            {
+                File class_file = getClassFile(file);
+                if (!class_file.exists() || class_file.lastModified() < file.lastModified())
+                {
+                    outdated = true;
+                    break;
+                }
+            }
+            if (!outdated)
+            {
+                Debug.trace("job " + this.name + " is up to date");
+                return new CompileResult();
+            }
+
+            List<File> classpath_files = new ArrayList<File>();
+            StringBuffer classpath_sb = new StringBuffer();
+            Iterator cp_it = this.classpath.iterator();
+            while (cp_it.hasNext())
+            {
+                File cp = new File((String) cp_it.next()).getAbsoluteFile();
+                classpath_files.add(cp);
+                if (classpath_sb.length() > 0)
+                {
+                    classpath_sb.append(File.pathSeparatorChar);
+                }
+                classpath_sb.append(cp.getPath());
+            }
+
+            // the equivalent command line, for error messages
+            List<String> cmdline = new ArrayList<String>();
+            cmdline.add(INTEGRATED_COMPILER_NAME);
+            cmdline.addAll(arguments);
+            if (classpath_sb.length() > 0)
+            {
+                cmdline.add("-classpath");
+                cmdline.add(classpath_sb.toString());
+            }
+            for (File file : this.files)
+            {
+                cmdline.add(file.getAbsolutePath());
+            }
+
+            StringWriter output = new StringWriter();
+            boolean success;
+            try
+            {
+                success = compiler.compile(arguments, classpath_files, this.files, output);
+            }
+            catch (IOException e)
+            {
+                return new CompileResult(this.langpack
+                        .getString("CompilePanel.error.invalidarguments"), cmdline, "", e
+                        .getMessage());
+            }
+            catch (IllegalArgumentException e)
+            {
+                return new CompileResult(this.langpack
+                        .getString("CompilePanel.error.invalidarguments"), cmdline, "", e
+                        .getMessage());
+            }
+            if (!success)
+            {
+                return new CompileResult(this.langpack.getString("CompilePanel.error"), cmdline,
+                        "", output.toString());
+            }
+            for (File file : this.files)
+            {
+                if (!getClassFile(file).exists())
+                {
+                    return new CompileResult(this.langpack
+                            .getString("CompilePanel.error.noclassfile")
+                            + file.getAbsolutePath(), cmdline, "", output.toString());
+                }
+            }
+
+            Debug.trace("job " + this.name + " done (" + this.files.size() + " files compiled)");
+            return new CompileResult();
+        }
+
+        private static File getClassFile(File java_file)
+        {
+            String basename = java_file.getName();
+            int dotpos = basename.lastIndexOf('.');
+            basename = basename.substring(0, dotpos) + ".class";
+            return new File(java_file.getParentFile(), basename);
+        }
+
         /**
          * Internal helper method.
          *
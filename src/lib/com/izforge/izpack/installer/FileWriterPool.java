@@ -0,0 +1,241 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A pool of threads writing unpacked files to disk, so that the unpacker thread can go on
+ * reading and decompressing the pack while files are created. The file contents are buffered
+ * in memory; the amount of buffered data is bounded and larger files should be written directly
+ * by the unpacker.
+ * <p/>
+ * Every written file carries a tag (e.g. its pack file) which is handed back by
+ * {@link #takeWritten(boolean)} in the order the files were submitted, once they are written.
+ */
+public class FileWriterPool<T>
+{
+    /**
+     * The largest file which is buffered and handed to the pool.
+     */
+    public static final int MAX_BUFFERED_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum amount of file data waiting to be written.
+     */
+    private static final int MAX_BUFFERED_BYTES = 16 * MAX_BUFFERED_FILE_SIZE;
+
+    private final ExecutorService executor;
+
+    private final Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+
+    /**
+     * The submitted files which were not yet taken, in submission order.
+     */
+    private final LinkedList<PendingFile> pending = new LinkedList<PendingFile>();
+
+    /**
+     * The last submitted file per path which was not yet taken.
+     */
+    private final Map<File, PendingFile> pendingByPath = new HashMap<File, PendingFile>();
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Creates a pool.
+     *
+     * @param threads the number of writer threads
+     */
+    public FileWriterPool(int threads)
+    {
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Hands a file over to the writers. Blocks while too much data is waiting to be written.
+     *
+     * @param file         the file to create or overwrite
+     * @param data         the content of the file
+     * @param lastModified the modification time to set, or a negative value to keep the current
+     *                     time
+     * @param mode         the Unix permission bits to set, or -1 to keep the default permissions
+     * @param executable   whether the execute permission is added to the default permissions
+     * @param tag          the tag to hand back once the file is written
+     */
+    public void write(final File file, final byte[] data, final long lastModified,
+                      final int mode, final boolean executable, T tag)
+            throws InterruptedException
+    {
+        final int permits = Math.min(data.length, MAX_BUFFERED_BYTES);
+        bufferedBytes.acquire(permits);
+        Future<Object> future;
+        try
+        {
+            future = executor.submit(new Callable<Object>()
+            {
+                public Object call() throws IOException
+                {
+                    try
+                    {
+                        if (!cancelled)
+                        {
+                            FileOutputStream out = new FileOutputStream(file);
+                            try
+                            {
+                                out.write(data);
+                            }
+                            finally
+                            {
+                                out.close();
+                            }
+                            if (lastModified >= 0)
+                            {
+                                file.setLastModified(lastModified);
+                            }
+                            UnpackerBase.setMode(file, mode, executable);
+                        }
+                        return null;
+                    }
+                    finally
+                    {
+                        bufferedBytes.release(permits);
+                    }
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            bufferedBytes.release(permits);
+            throw e;
+        }
+        PendingFile pendingFile = new PendingFile(file, future, tag);
+        pending.add(pendingFile);
+        pendingByPath.put(file, pendingFile);
+    }
+
+    /**
+     * Waits until all files submitted for the given path are written. This has to be called
+     * before the path is touched by someone else than the pool, including before it is
+     * submitted again, so only the last submission for a path can still be running.
+     *
+     * @param file the path
+     * @throws Exception if writing the file failed
+     */
+    public void await(File file) throws Exception
+    {
+        PendingFile pendingFile = pendingByPath.get(file);
+        if (pendingFile != null)
+        {
+            get(pendingFile.future);
+        }
+    }
+
+    /**
+     * Returns the tags of the files written so far, in submission order. Only the leading
+     * written files are returned, i.e. a written file is held back until all files submitted
+     * before it are written as well.
+     *
+     * @param all if true, waits until all submitted files are written
+     * @return the tags of the written files
+     * @throws Exception if writing a file failed
+     */
+    public List<T> takeWritten(boolean all) throws Exception
+    {
+        List<T> written = new ArrayList<T>();
+        Iterator<PendingFile> iter = pending.iterator();
+        while (iter.hasNext())
+        {
+            PendingFile pendingFile = iter.next();
+            if (!all && !pendingFile.future.isDone())
+            {
+                break;
+            }
+            get(pendingFile.future);
+            written.add(pendingFile.tag);
+            iter.remove();
+            if (pendingByPath.get(pendingFile.file) == pendingFile)
+            {
+                pendingByPath.remove(pendingFile.file);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Stops the writers. Files not yet written are dropped.
+     */
+    public void shutdown()
+    {
+        cancelled = true;
+        executor.shutdownNow();
+        pending.clear();
+        pendingByPath.clear();
+    }
+
+    private static void get(Future<Object> future) throws Exception
+    {
+        try
+        {
+            future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+            {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A file handed over to the writers.
+     */
+    private class PendingFile
+    {
+        private final File file;
+
+        private final Future<Object> future;
+
+        private final T tag;
+
+        PendingFile(File file, Future<Object> future, T tag)
+        {
+            this.file = file;
+            this.future = future;
+            this.tag = tag;
+        }
+    }
+}
@@ -10,6 +10,13 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.zip.ZipInputStream;
 import com.izforge.izpack.IPSPack;
@@ -113,7 +120,14 @@ public class IPSUnpacker extends UnpackerBase
 	public static final String TEMPLATE = "ips/empty.zip";
 
 	/**
-	 * The IPS image dwelling in the installation directory.
+	 * The variable telling whether all IPS packs are installed with one single
+	 * plan.
+	 */
+	public static final String BATCH_VARIABLE = "IPSUnpacker.batch";
+
+	/**
+	 * The IPS image dwelling in the installation directory. Its inventory is
+	 * cached, so it has to be invalidated whenever a plan is executed.
 	 */
 	private static ExtendedImage img = null;
 
@@ -158,7 +172,9 @@ public class IPSUnpacker extends UnpackerBase
 	@Override
 	public void run ()
 	{
-		handler.startAction("IPSUnpacker", idata.selectedIPSPacks.size() + 3);
+		boolean batch = "true".equalsIgnoreCase(idata.getVariable(BATCH_VARIABLE));
+		handler.startAction("IPSUnpacker", (batch ? 1
+				: idata.selectedIPSPacks.size()) + 3);
 		int job = 0;
 		try
 		{
@@ -188,14 +204,30 @@ public class IPSUnpacker extends UnpackerBase
 			}
 			plan.execute(new ImagePlanProgressTrackerForIzPack(handler,
 					idata.langpack, 1));
+			img.invalidateInventory();
 			/*
-			 * Install each IPS pack.
+			 * Install each IPS pack, or all of them at once.
 			 */
-			for (IPSPack pack: idata.selectedIPSPacks)
+			if (batch)
 			{
-				trivial = false;
-				handler.nextStep(pack.getName(), ++job, 4);
-				installPack(pack);
+				if (!idata.selectedIPSPacks.isEmpty())
+				{
+					trivial = false;
+					Map<URL, List<IPSPack>> packsByAuthority = groupByAuthority(idata.selectedIPSPacks);
+					handler.nextStep(idata.langpack.getString(
+							"IPSInstallPanel.resolvingdependencies"), ++job,
+							packsByAuthority.size() * 6);
+					installPacks(packsByAuthority);
+				}
+			}
+			else
+			{
+				for (IPSPack pack: idata.selectedIPSPacks)
+				{
+					trivial = false;
+					handler.nextStep(pack.getName(), ++job, 4);
+					installPack(pack);
+				}
 			}
 			idata.selectedIPSPacks.clear();
 			/*
@@ -266,6 +298,7 @@ public class IPSUnpacker extends UnpackerBase
 			img.makeInstallPlan(pack.getPackages(img.getInventory())).execute(
 					new ImagePlanProgressTrackerForIzPack(handler,
 							idata.langpack, step));
+			img.invalidateInventory();
 		}
 		catch (Exception e)
 		{
@@ -275,6 +308,83 @@ public class IPSUnpacker extends UnpackerBase
 		}
 	}
 
+	/**
+	 * Group IPS packs by authority, keeping the order in which the
+	 * authorities first appear.
+	 * 
+	 * @param packs The IPS packs.
+	 * @return The IPS packs, by authority.
+	 */
+	private static Map<URL, List<IPSPack>> groupByAuthority (List<IPSPack> packs)
+	{
+		Map<URL, List<IPSPack>> packsByAuthority = new LinkedHashMap<URL, List<IPSPack>>();
+		for (IPSPack pack: packs)
+		{
+			List<IPSPack> group = packsByAuthority.get(pack.getAuthority());
+			if (group == null)
+			{
+				group = new ArrayList<IPSPack>();
+				packsByAuthority.put(pack.getAuthority(), group);
+			}
+			group.add(pack);
+		}
+		return packsByAuthority;
+	}
+
+	/**
+	 * Install several IPS packs in the local IPS image with one plan per
+	 * authority, so that dependencies are resolved, packages downloaded and
+	 * the image updated only once per authority. Each plan is made while its
+	 * authority is the preferred one, like for a single pack.
+	 * 
+	 * @param packsByAuthority The IPS packs we're to install, by authority.
+	 */
+	private void installPacks (Map<URL, List<IPSPack>> packsByAuthority)
+	{
+		int step = 0;
+		for (Map.Entry<URL, List<IPSPack>> entry: packsByAuthority.entrySet())
+		{
+			try
+			{
+				/*
+				 * Update an existing authority or add an additional authority
+				 * for packages retrieving.
+				 */
+				handler.progress(
+						++step,
+						idata.langpack.getString("IPSInstallPanel.retrievingcatalog"));
+				img.addAuthority(entry.getKey());
+				/*
+				 * Install the packages the packs of this authority require.
+				 */
+				handler.progress(
+						++step,
+						idata.langpack.getString("IPSInstallPanel.resolvingdependencies"));
+				Collection<String> inventory = img.getInventory();
+				Collection<String> pkgs = new LinkedHashSet<String>();
+				for (IPSPack pack: entry.getValue())
+				{
+					for (String pkg: pack.getPackages(inventory))
+					{
+						pkgs.add(pkg);
+					}
+				}
+				img.makeInstallPlan(pkgs).execute(
+						new ImagePlanProgressTrackerForIzPack(handler,
+								idata.langpack, step));
+				img.invalidateInventory();
+				// skip the steps of the four phases of the plan
+				step += 4;
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+				handler.emitWarning(e.getClass().getSimpleName(),
+						e.getLocalizedMessage());
+			}
+		}
+	}
+
 	/**
 	 * Install the Sun Update Center in the local IPS image.
 	 * 
@@ -929,6 +929,12 @@ public class InstallerFrame extends JFrame {
             }
             outJar.closeEntry();
 
+            // We write the files manifest
+            outJar.putNextEntry(new ZipEntry(InstallManifest.RESOURCE));
+            InstallManifest.write(outJar, installdata.getInstallPath(), files, udata.getFilePacks(),
+                    udata.getFileDigests());
+            outJar.closeEntry();
+
 			/*
 			 * We write the IPS packages log.
 			 */
@@ -0,0 +1,245 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer;
+
+import com.izforge.izpack.Pack;
+import com.izforge.izpack.PackFile;
+import com.izforge.izpack.event.InstallerFileBatchListener;
+import com.izforge.izpack.event.InstallerListener;
+import com.izforge.izpack.util.AbstractUIProgressHandler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The installer listeners of an unpacker, sorted once by the events they want. The file and
+ * directory events are only dispatched to the file listeners, and not at all if there are none,
+ * so the unpacker can ask {@link #hasFileListeners()} to skip the work for them. The installed
+ * files are collected for the {@link InstallerFileBatchListener}s and handed over every
+ * {@link #BATCH_SIZE} files and at the end of each pack.
+ * <p/>
+ * Like before, an interrupted installation stops the dispatching of events.
+ */
+public class InstallerListeners
+{
+    /**
+     * The number of installed files handed to the batch listeners at once.
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    private final UnpackerBase unpacker;
+
+    private final InstallerListener[] listeners;
+
+    private final InstallerListener[] fileListeners;
+
+    private final InstallerFileBatchListener[] batchListeners;
+
+    private List<File> files = new ArrayList<File>();
+
+    private List<PackFile> packFiles = new ArrayList<PackFile>();
+
+    /**
+     * Sorts the listeners.
+     *
+     * @param listeners the installer listeners
+     * @param unpacker  the unpacker, to check whether the installation was interrupted
+     */
+    InstallerListeners(List listeners, UnpackerBase unpacker)
+    {
+        this.unpacker = unpacker;
+        List<InstallerListener> all = new ArrayList<InstallerListener>();
+        List<InstallerListener> files = new ArrayList<InstallerListener>();
+        List<InstallerFileBatchListener> batches = new ArrayList<InstallerFileBatchListener>();
+        for (Object object : listeners)
+        {
+            // If we get a class cast exception many is wrong and
+            // we must fix it.
+            InstallerListener listener = (InstallerListener) object;
+            all.add(listener);
+            if (listener.isFileListener())
+            {
+                files.add(listener);
+            }
+            if (listener instanceof InstallerFileBatchListener)
+            {
+                batches.add((InstallerFileBatchListener) listener);
+            }
+        }
+        this.listeners = all.toArray(new InstallerListener[all.size()]);
+        fileListeners = files.toArray(new InstallerListener[files.size()]);
+        batchListeners = batches.toArray(new InstallerFileBatchListener[batches.size()]);
+    }
+
+    /**
+     * Returns whether there are listeners for every file and directory.
+     */
+    public boolean hasFileListeners()
+    {
+        return fileListeners.length > 0;
+    }
+
+    /**
+     * Returns whether installed files have to be reported by {@link #afterFile}.
+     */
+    public boolean hasAfterFileListeners()
+    {
+        return fileListeners.length > 0 || batchListeners.length > 0;
+    }
+
+    public void beforePacks(AutomatedInstallData idata, Integer npacks,
+                            AbstractUIProgressHandler handler) throws Exception
+    {
+        if (listeners.length == 0 || unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerListener listener : listeners)
+        {
+            listener.beforePacks(idata, npacks, handler);
+        }
+    }
+
+    public void beforePack(Pack pack, Integer i, AbstractUIProgressHandler handler)
+            throws Exception
+    {
+        if (listeners.length == 0 || unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerListener listener : listeners)
+        {
+            listener.beforePack(pack, i, handler);
+        }
+    }
+
+    public void beforeDir(File dir, PackFile pf) throws Exception
+    {
+        if (fileListeners.length == 0 || unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerListener listener : fileListeners)
+        {
+            listener.beforeDir(dir, pf);
+        }
+    }
+
+    public void afterDir(File dir, PackFile pf) throws Exception
+    {
+        if (fileListeners.length == 0 || unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerListener listener : fileListeners)
+        {
+            listener.afterDir(dir, pf);
+        }
+    }
+
+    public void beforeFile(File file, PackFile pf) throws Exception
+    {
+        if (fileListeners.length == 0 || unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerListener listener : fileListeners)
+        {
+            listener.beforeFile(file, pf);
+        }
+    }
+
+    /**
+     * Informs the file listeners about an installed file and collects it for the batch
+     * listeners.
+     */
+    public void afterFile(File file, PackFile pf) throws Exception
+    {
+        if (!hasAfterFileListeners() || unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerListener listener : fileListeners)
+        {
+            listener.afterFile(file, pf);
+        }
+        if (batchListeners.length > 0)
+        {
+            files.add(file);
+            packFiles.add(pf);
+            if (files.size() >= BATCH_SIZE)
+            {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Hands the collected files to the batch listeners.
+     */
+    public void flush() throws Exception
+    {
+        if (files.isEmpty())
+        {
+            return;
+        }
+        List<File> batch = files;
+        List<PackFile> packBatch = packFiles;
+        files = new ArrayList<File>();
+        packFiles = new ArrayList<PackFile>();
+        if (unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerFileBatchListener listener : batchListeners)
+        {
+            listener.afterFiles(batch, packBatch);
+        }
+    }
+
+    public void afterPack(Pack pack, Integer i, AbstractUIProgressHandler handler)
+            throws Exception
+    {
+        flush();
+        if (listeners.length == 0 || unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerListener listener : listeners)
+        {
+            listener.afterPack(pack, i, handler);
+        }
+    }
+
+    public void afterPacks(AutomatedInstallData idata, AbstractUIProgressHandler handler)
+            throws Exception
+    {
+        flush();
+        if (listeners.length == 0 || unpacker.shouldInterrupt())
+        {
+            return;
+        }
+        for (InstallerListener listener : listeners)
+        {
+            listener.afterPacks(idata, handler);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Compiles sources with the Java compiler of the running JVM through the <code>javax.tools</code>
+ * API, instead of starting an external compiler process.
+ * <p/>
+ * The API exists since Java 6 and only in a JDK, so {@link #isAvailable()} has to be checked before
+ * anything else is used. A compiler instance keeps its file manager, and with it the opened class
+ * path archives, for all the compilations it does. File managers are not thread safe, so each
+ * thread compiling has to use its own instance.
+ */
+class IntegratedJavaCompiler
+{
+    private final JavaCompiler compiler;
+
+    private final StandardJavaFileManager fileManager;
+
+    /**
+     * Creates a compiler. Check {@link #isAvailable()} first.
+     */
+    IntegratedJavaCompiler()
+    {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        fileManager = compiler.getStandardFileManager(null, null, null);
+    }
+
+    /**
+     * Checks whether the running JVM has a compiler.
+     *
+     * @return true if sources can be compiled in-process
+     */
+    static boolean isAvailable()
+    {
+        try
+        {
+            return ToolProvider.getSystemJavaCompiler() != null;
+        }
+        catch (LinkageError e)
+        {
+            // no javax.tools before Java 6
+            return false;
+        }
+    }
+
+    /**
+     * Compiles sources.
+     *
+     * @param options   the compiler options, without the class path
+     * @param classpath the class path, or an empty list for the class path of the JVM
+     * @param files     the sources to compile
+     * @param output    receives the messages of the compiler
+     * @return true if the compilation succeeded
+     * @throws IOException              if a class path entry is invalid
+     * @throws IllegalArgumentException if an option is invalid
+     */
+    boolean compile(List<String> options, List<File> classpath, List<File> files, Writer output)
+            throws IOException
+    {
+        // the file manager reads a class path option only once, so it is set for each compilation
+        fileManager.setLocation(StandardLocation.CLASS_PATH, classpath.isEmpty() ? null : classpath);
+        Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(files);
+        return compiler.getTask(output, fileManager, null, options, null, units).call();
+    }
+
+    /**
+     * Releases the resources of the file manager.
+     */
+    void close()
+    {
+        try
+        {
+            fileManager.close();
+        }
+        catch (IOException e)
+        {
+            // nothing to do, only archives which were read are closed
+        }
+    }
+}
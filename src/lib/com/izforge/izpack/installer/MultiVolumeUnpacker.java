@@ -18,7 +18,7 @@
 package com.izforge.izpack.installer;
 
 import com.izforge.izpack.*;
-import com.izforge.izpack.event.InstallerListener;
+import com.izforge.izpack.io.ChunkIndex;
 import com.izforge.izpack.io.CorruptVolumeException;
 import com.izforge.izpack.io.FileSpanningInputStream;
 import com.izforge.izpack.io.FileSpanningOutputStream;
@@ -29,6 +29,7 @@ import com.izforge.izpack.util.*;
 import javax.swing.*;
 import java.awt.*;
 import java.io.*;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -120,10 +121,13 @@ public class MultiVolumeUnpacker extends UnpackerBase
             Debug.trace("Unpacker starting");
             handler.startAction("Unpacking", npacks);
             udata = UninstallData.getInstance();
+            // the digests of the written files are recorded for the uninstaller
+            MessageDigest digest = IoHelper.createDigest();
             // Custom action listener stuff --- load listeners ----
             List[] customActions = getCustomActions();
+            InstallerListeners listeners = getInstallerListeners(customActions);
             // Custom action listener stuff --- beforePacks ----
-            informListeners(customActions, InstallerListener.BEFORE_PACKS, idata, npacks, handler);
+            listeners.beforePacks(idata, npacks, handler);
             // vs = new VariableSubstitutor(idata.getVariables());
             packs = idata.selectedPacks;
             npacks = packs.size();
@@ -135,7 +139,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
                 }
 
                 // Custom action listener stuff --- afterPacks ----
-                informListeners(customActions, InstallerListener.AFTER_PACKS, idata, handler, null);
+                listeners.afterPacks(idata, handler);
                 if (performInterrupted())
                 { // Interrupt was initiated; perform it.
                     return;
@@ -153,6 +157,16 @@ public class MultiVolumeUnpacker extends UnpackerBase
             int volumes = metadataobj.readInt();
             String volumename = metadataobj.readUTF();
             Debug.trace("Reading from " + volumes + " volumes with basename " + volumename + " ");
+            ChunkIndex chunks = null;
+            try
+            {
+                chunks = ChunkIndex.readFrom(metadataobj);
+                Debug.trace("Volumes are split into " + chunks.size() + " chunks");
+            }
+            catch (EOFException e)
+            {
+                // volumes without chunk index, files are reached by reading through the volumes
+            }
             metadataobj.close();
             String mediadirectory = MultiVolumeInstaller.getMediadirectory();
             if ((mediadirectory == null) || (mediadirectory.length() <= 0))
@@ -167,7 +181,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
             {
                 volume = enterNextMediaMessage(volume.getAbsolutePath());
             }
-            FileSpanningInputStream fin = new FileSpanningInputStream(volume, volumes);
+            FileSpanningInputStream fin = new FileSpanningInputStream(volume, volumes, chunks);
 
             // We unpack the selected packs
             for (int i = 0; i < npacks; i++)
@@ -178,8 +192,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
                 in = MultiVolumeUnpacker.class.getResourceAsStream("/packs/pack" + n);
 
                 // Custom action listener stuff --- beforePack ----
-                informListeners(customActions, InstallerListener.BEFORE_PACK, packs.get(i),
-                        npacks, handler);
+                listeners.beforePack((Pack) packs.get(i), npacks, handler);
                 // find next Entry
                 ObjectInputStream objIn = new ObjectInputStream(in);
                 // We unpack the files
@@ -236,10 +249,9 @@ public class MultiVolumeUnpacker extends UnpackerBase
                             // If there are custom actions which would be called
                             // at
                             // creating a directory, create it recursively.
-                            List fileListeners = customActions[customActions.length - 1];
-                            if (fileListeners != null && fileListeners.size() > 0)
+                            if (listeners.hasFileListeners())
                             {
-                                mkDirsWithEnhancement(dest, pf, customActions);
+                                mkDirsWithEnhancement(dest, pf, listeners);
                             }
                             else
                             // Create it in on step.
@@ -261,10 +273,9 @@ public class MultiVolumeUnpacker extends UnpackerBase
                         }
 
                         // Custom action listener stuff --- beforeFile ----
-                        informListeners(customActions, InstallerListener.BEFORE_FILE, pathFile, pf,
-                                null);
+                        listeners.beforeFile(pathFile, pf);
                         // We add the path to the log,
-                        udata.addFile(path, pack.uninstall);
+                        udata.addFile(path, pack.uninstall, pack.name);
 
                         handler.progress(j, path);
 
@@ -331,6 +342,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
                         }
 
                         // We copy the file
+                        digest.reset();
                         out = new FileOutputStream(pathFile);
                         byte[] buffer = new byte[5120];
                         long bytesCopied = 0;
@@ -346,15 +358,14 @@ public class MultiVolumeUnpacker extends UnpackerBase
                         // long fileposition = objIn.readLong();
                         long fileposition = pf.getArchivefileposition();
 
-                        while (fin.getFilepointer() < fileposition)
+                        while (!((Pack) packs.get(i)).loose && fin.getFilepointer() != fileposition)
                         {
-                            // we have to skip some bytes
-                            Debug.trace("Skipping bytes to get to file " + pathFile.getName()
-                                    + " (" + fin.getFilepointer() + "<" + fileposition
-                                    + ") target is: " + (fileposition - fin.getFilepointer()));
+                            // we have to move to the file
+                            Debug.trace("Seeking to file " + pathFile.getName()
+                                    + " (" + fin.getFilepointer() + "->" + fileposition + ")");
                             try
                             {
-                                fin.skip(fileposition - fin.getFilepointer());
+                                fin.seek(fileposition);
                                 break;
                             }
                             catch (VolumeNotFoundException vnfe)
@@ -400,6 +411,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
                                 }
 
                                 out.write(buffer, 0, bytesInBuffer);
+                                digest.update(buffer, 0, bytesInBuffer);
 
                                 bytesCopied += bytesInBuffer;
                             }
@@ -417,6 +429,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
                         }
                         // Cleanings
                         out.close();
+                        udata.setFileDigest(path, IoHelper.toHexString(digest.digest()));
                         // if (pis != objIn) pis.close();
 
                         // Set file modification time if specified
@@ -424,9 +437,9 @@ public class MultiVolumeUnpacker extends UnpackerBase
                         {
                             pathFile.setLastModified(pf.lastModified());
                         }
+                        setMode(pathFile, pf.mode(), pf.isExecutable());
                         // Custom action listener stuff --- afterFile ----
-                        informListeners(customActions, InstallerListener.AFTER_FILE, pathFile, pf,
-                                null);
+                        listeners.afterFile(pathFile, pf);
                     }
                     else
                     {
@@ -532,12 +545,13 @@ public class MultiVolumeUnpacker extends UnpackerBase
                 }
 
                 // Custom action listener stuff --- afterPack ----
-                informListeners(customActions, InstallerListener.AFTER_PACK, packs.get(i),
-                        i, handler);
+                listeners.afterPack((Pack) packs.get(i), i, handler);
             }
             Debug.trace("Trying to parse files");
             // We use the scripts parser
             ScriptParser parser = new ScriptParser(parsables, vs);
+            parser.setThreads(getThreads(ScriptParser.THREADS_VARIABLE));
+            parser.setUninstallData(udata);
             parser.parseFiles();
             Debug.trace("parsed files");
             if (performInterrupted())
@@ -572,7 +586,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
             }
 
             // Custom action listener stuff --- afterPacks ----
-            informListeners(customActions, InstallerListener.AFTER_PACKS, idata, handler, null);
+            listeners.afterPacks(idata, handler);
             if (performInterrupted())
             { // Interrupt was initiated; perform it.
                 return;
@@ -0,0 +1,406 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer;
+
+import com.izforge.izpack.util.Debug;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Downloads the pack jars of a web installer in the background, so that the next packs are
+ * already on disk while the current one is unpacked.
+ * <p/>
+ * The jars are downloaded to a cache directory. A download which breaks off is resumed with a
+ * HTTP range request and every downloaded jar is checked by reading all its entries, which
+ * verifies their CRCs. Downloads only start while the jars which were downloaded but not taken
+ * yet are smaller than a limit, except for the jar the installer is waiting for.
+ */
+public class PackDownloader
+{
+    /**
+     * The default limit of the downloaded jars which were not taken yet.
+     */
+    public static final long DEFAULT_MAX_CACHED_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * How often a download is tried before giving up.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The time in milliseconds after which a stalled connection is given up and resumed.
+     */
+    private static final int TIMEOUT = 60 * 1000;
+
+    private final File cacheDir;
+
+    private final long maxCachedBytes;
+
+    private final ExecutorService executor;
+
+    private final Map<String, FutureTask<File>> downloads = new HashMap<String, FutureTask<File>>();
+
+    /**
+     * The URLs the installer waits for.
+     */
+    private final Set<String> wanted = new HashSet<String>();
+
+    /**
+     * The URLs taken by the installer.
+     */
+    private final Set<String> taken = new HashSet<String>();
+
+    /**
+     * The size of the downloaded jars which were not taken yet.
+     */
+    private long cachedBytes = 0;
+
+    /**
+     * Creates a downloader.
+     *
+     * @param cacheDir       the directory to download to
+     * @param threads        the number of jars downloaded at the same time
+     * @param maxCachedBytes the limit of the downloaded jars which were not taken yet
+     */
+    public PackDownloader(File cacheDir, int threads, long maxCachedBytes)
+    {
+        this.cacheDir = cacheDir;
+        this.maxCachedBytes = maxCachedBytes;
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Queues a jar for download. The jars are downloaded in the order they are queued.
+     *
+     * @param url the URL of the jar
+     */
+    public synchronized void prefetch(String url)
+    {
+        if (!downloads.containsKey(url))
+        {
+            FutureTask<File> download = new FutureTask<File>(new Download(url));
+            downloads.put(url, download);
+            executor.execute(download);
+        }
+    }
+
+    /**
+     * Returns a downloaded jar, waiting for its download to finish. A jar which was not queued or
+     * whose download didn't start yet is downloaded by the calling thread.
+     *
+     * @param url the URL of the jar
+     * @return the downloaded file
+     * @throws IOException          if the jar can't be downloaded
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public File get(String url) throws IOException, InterruptedException
+    {
+        FutureTask<File> download;
+        synchronized (this)
+        {
+            download = downloads.get(url);
+            if (download == null)
+            {
+                download = new FutureTask<File>(new Download(url));
+                downloads.put(url, download);
+            }
+            wanted.add(url);
+            notifyAll();
+        }
+        // does nothing if a download thread already started it
+        download.run();
+        File file;
+        try
+        {
+            file = download.get();
+        }
+        catch (ExecutionException e)
+        {
+            synchronized (this)
+            {
+                // allow another try
+                downloads.remove(url);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            IOException exception = new IOException("Download of " + url + " failed");
+            exception.initCause(cause);
+            throw exception;
+        }
+        synchronized (this)
+        {
+            if (taken.add(url))
+            {
+                cachedBytes -= file.length();
+                notifyAll();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Stops all downloads.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    private synchronized void waitForSpace(String url) throws InterruptedException
+    {
+        while (cachedBytes >= maxCachedBytes && !wanted.contains(url))
+        {
+            wait();
+        }
+    }
+
+    private synchronized void addCached(String url, File file)
+    {
+        if (!taken.contains(url))
+        {
+            cachedBytes += file.length();
+        }
+    }
+
+    /**
+     * Downloads to a file, resuming a partial download if the server supports range requests.
+     *
+     * @param url  the URL to download
+     * @param file the file to download to, it may hold the beginning of the data
+     * @throws IOException if the download fails
+     */
+    static void transfer(String url, File file) throws IOException
+    {
+        long offset = file.length();
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        boolean append = false;
+        if (connection instanceof HttpURLConnection)
+        {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            if (offset > 0)
+            {
+                http.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+            int code = http.getResponseCode();
+            if (code == HttpURLConnection.HTTP_PARTIAL)
+            {
+                String range = http.getHeaderField("Content-Range");
+                if (range == null || !range.startsWith("bytes " + offset + "-"))
+                {
+                    http.disconnect();
+                    file.delete();
+                    throw new IOException("Unexpected range " + range + " for " + url);
+                }
+                append = true;
+            }
+            else if (code == 416 && offset > 0)
+            {
+                // the file is already complete
+                http.disconnect();
+                return;
+            }
+            else if (code != HttpURLConnection.HTTP_OK)
+            {
+                http.disconnect();
+                throw new IOException("HTTP error " + code + " for " + url);
+            }
+        }
+        if (offset > 0 && !append)
+        {
+            Debug.trace("Restarting the download of " + url);
+        }
+
+        long expected = getContentLength(connection);
+        long transferred = 0;
+        InputStream in = connection.getInputStream();
+        try
+        {
+            OutputStream out = new FileOutputStream(file, append);
+            try
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    out.write(buffer, 0, read);
+                    transferred += read;
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        // a dropped connection just ends the stream
+        if (expected >= 0 && transferred < expected)
+        {
+            throw new IOException("Download of " + url + " broke off after " + transferred + " of "
+                    + expected + " bytes");
+        }
+    }
+
+    private static long getContentLength(URLConnection connection)
+    {
+        String length = connection.getHeaderField("Content-Length");
+        if (length != null)
+        {
+            try
+            {
+                return Long.parseLong(length.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                // unknown
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks a downloaded jar by reading its directory and all its entries.
+     *
+     * @param file the jar
+     * @return false if the jar is truncated or corrupted
+     */
+    static boolean verify(File file)
+    {
+        try
+        {
+            // a truncated jar has no directory
+            ZipFile zipFile = new ZipFile(file);
+            int size = zipFile.size();
+            zipFile.close();
+
+            ZipInputStream in = new ZipInputStream(new BufferedInputStream(new FileInputStream(
+                    file)));
+            try
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int entries = 0;
+                while (in.getNextEntry() != null)
+                {
+                    entries++;
+                    // reading an entry up to its end checks its CRC
+                    while (in.read(buffer) != -1)
+                    {
+                    }
+                }
+                return entries == size;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (IOException e)
+        {
+            Debug.trace("Invalid download " + file + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Downloads a jar.
+     */
+    private class Download implements Callable<File>
+    {
+        private final String url;
+
+        Download(String url)
+        {
+            this.url = url;
+        }
+
+        public File call() throws Exception
+        {
+            waitForSpace(url);
+            cacheDir.mkdirs();
+            String name = url.substring(url.lastIndexOf('/') + 1);
+            File file = new File(cacheDir, name);
+            File part = new File(cacheDir, name + ".part");
+
+            download(part);
+            if (!verify(part))
+            {
+                // maybe a partial download of another version, start over
+                part.delete();
+                download(part);
+                if (!verify(part))
+                {
+                    part.delete();
+                    throw new IOException("Corrupted download of " + url);
+                }
+            }
+            file.delete();
+            if (!part.renameTo(file))
+            {
+                throw new IOException("Could not rename " + part + " to " + file);
+            }
+            addCached(url, file);
+            Debug.trace("Downloaded " + url + " (" + file.length() + " bytes)");
+            return file;
+        }
+
+        private void download(File part) throws IOException
+        {
+            for (int attempt = 1; ; attempt++)
+            {
+                try
+                {
+                    transfer(url, part);
+                    return;
+                }
+                catch (IOException e)
+                {
+                    if (attempt == MAX_ATTEMPTS || Thread.currentThread().isInterrupted())
+                    {
+                        throw e;
+                    }
+                    Debug.trace("Download of " + url + " failed, resuming: " + e);
+                }
+            }
+        }
+    }
+}
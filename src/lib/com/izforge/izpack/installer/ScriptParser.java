@@ -22,12 +22,22 @@
 package com.izforge.izpack.installer;
 
 import com.izforge.izpack.ParsableFile;
+import com.izforge.izpack.util.IoHelper;
 import com.izforge.izpack.util.OsConstraint;
 import com.izforge.izpack.util.VariableSubstitutor;
 
 import java.io.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The script parser classe.
@@ -104,6 +114,13 @@ public class ScriptParser
     public final static String LOCALE = "LOCALE_IDENTIFIER";
 
 
+    /**
+     * The variable holding the number of threads parsing files, files are parsed one after the
+     * other if it is not set or less than 2.
+     */
+    public final static String THREADS_VARIABLE = "ScriptParser.threads";
+
+
     /**
      * The files to parse.
      */
@@ -114,6 +131,16 @@ public class ScriptParser
      */
     private VariableSubstitutor vs;
 
+    /**
+     * The number of threads parsing files.
+     */
+    private int threads = 1;
+
+    /**
+     * The uninstall data receiving the digests of the parsed files, or null.
+     */
+    private UninstallData udata;
+
     /**
      * Constructs a new parser. The parsable files specified must have pretranslated paths
      * (variables expanded and file separator characters converted if necessary).
@@ -127,6 +154,28 @@ public class ScriptParser
         this.vs = vs;
     }
 
+    /**
+     * Sets the number of threads parsing files.
+     *
+     * @param threads the number of threads, files are parsed one after the other if less than 2
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets the uninstall data to record the digests of the parsed files in. The unpacker
+     * records the digest of a file when writing it, which no longer matches once the file has
+     * been parsed.
+     *
+     * @param udata the uninstall data, or null to record nothing
+     */
+    public void setUninstallData(UninstallData udata)
+    {
+        this.udata = udata;
+    }
+
     /**
      * Parses the files.
      *
@@ -134,6 +183,11 @@ public class ScriptParser
      */
     public void parseFiles() throws Exception
     {
+        if (threads > 1)
+        {
+            parseFilesConcurrently();
+            return;
+        }
         // Parses the files
         Iterator<ParsableFile> iter = files.iterator();
         while (iter.hasNext())
@@ -143,34 +197,131 @@ public class ScriptParser
             {
                 return;
             }
-            // Create a temporary file for the parsed data
-            // (Use the same directory so that renaming works later)
-            ParsableFile pfile = iter.next();
+            parseFile(iter.next());
+        }
+    }
 
-            // check whether the OS matches
-            if (!OsConstraint.oneMatchesCurrentSystem(pfile.osConstraints))
+    /**
+     * Parses the files with a pool of threads. If parsing fails, the files not started yet are
+     * left alone and the failure of the first of the files in order is thrown.
+     *
+     * @throws Exception Description of the Exception
+     */
+    private void parseFilesConcurrently() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (final ParsableFile pfile : files)
+            {
+                results.add(executor.submit(new Callable<Object>()
+                {
+                    public Object call() throws Exception
+                    {
+                        // If interrupt is desired, skip the remaining files.
+                        if (!Unpacker.isInterruptDesired())
+                        {
+                            parseFile(pfile);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> result : results)
             {
-                continue;
+                try
+                {
+                    result.get();
+                }
+                catch (ExecutionException e)
+                {
+                    for (Future<Object> other : results)
+                    {
+                        other.cancel(false);
+                    }
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error)
+                    {
+                        throw (Error) cause;
+                    }
+                    throw (Exception) cause;
+                }
             }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
 
-            File file = new File(pfile.path);
-            File parsedFile = File.createTempFile("izpp", null, file.getParentFile());
+    /**
+     * Parses a file.
+     *
+     * @param pfile the file to parse
+     * @throws Exception Description of the Exception
+     */
+    private void parseFile(ParsableFile pfile) throws Exception
+    {
+        // check whether the OS matches
+        if (!OsConstraint.oneMatchesCurrentSystem(pfile.osConstraints))
+        {
+            return;
+        }
+
+        // Create a temporary file for the parsed data
+        // (Use the same directory so that renaming works later)
+        File file = new File(pfile.path);
+        File parsedFile = File.createTempFile("izpp", null, file.getParentFile());
+        MessageDigest digest = (udata == null) ? null : IoHelper.createDigest();
 
+        try
+        {
             // Parses the file
-            // (Use buffering because substitutor processes byte at a time)
             FileInputStream inFile = new FileInputStream(file);
             BufferedInputStream in = new BufferedInputStream(inFile, 5120);
-            FileOutputStream outFile = new FileOutputStream(parsedFile);
-            BufferedOutputStream out = new BufferedOutputStream(outFile, 5120);
-            vs.substitute(in, out, pfile.type, pfile.encoding);
-            in.close();
-            out.close();
-
-            // Replace the original file with the parsed one
-            file.delete();
+            try
+            {
+                OutputStream outFile = new FileOutputStream(parsedFile);
+                if (digest != null)
+                {
+                    outFile = new DigestOutputStream(outFile, digest);
+                }
+                BufferedOutputStream out = new BufferedOutputStream(outFile, 5120);
+                try
+                {
+                    vs.substitute(in, out, pfile.type, pfile.encoding);
+                }
+                finally
+                {
+                    out.close();
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+
+            // Replace the original file with the parsed one, in one step where the
+            // platform allows renaming over an existing file
             if (!parsedFile.renameTo(file))
             {
-                throw new IOException("Could not rename file " + parsedFile + " to " + file);
+                file.delete();
+                if (!parsedFile.renameTo(file))
+                {
+                    throw new IOException("Could not rename file " + parsedFile + " to " + file);
+                }
+            }
+            if (digest != null)
+            {
+                udata.setFileDigest(pfile.path, IoHelper.toHexString(digest.digest()));
+            }
+        }
+        finally
+        {
+            if (parsedFile.exists())
+            {
+                parsedFile.delete();
             }
         }
     }
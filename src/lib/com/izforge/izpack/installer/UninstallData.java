@@ -48,6 +48,16 @@ public class UninstallData
      */
     private List uninstallableFilesList;
 
+    /**
+     * The packs of the installed files by their paths.
+     */
+    private Map<String, String> filePacks;
+
+    /**
+     * The SHA-1 digests of the content of the unpacked files by their paths.
+     */
+    private Map<String, String> fileDigests;
+
     /**
      * The executables list.
      */
@@ -80,6 +90,8 @@ public class UninstallData
     {
         installedFilesList = new ArrayList<String>();
         uninstallableFilesList = new ArrayList();
+        filePacks = new HashMap<String, String>();
+        fileDigests = new HashMap<String, String>();
         executablesList = new ArrayList();
         additionalData = new HashMap<String, Object>();
         unInstallScripts = new ArrayList<String>();
@@ -122,6 +134,55 @@ public class UninstallData
         }
     }
 
+    /**
+     * Adds a file of a pack to the data.
+     *
+     * @param path      The file to add.
+     * @param uninstall If true, file must be uninstalled.
+     * @param pack      The name of the pack the file belongs to.
+     */
+    public synchronized void addFile(String path, boolean uninstall, String pack)
+    {
+        addFile(path, uninstall);
+        if (path != null && pack != null)
+        {
+            filePacks.put(path, pack);
+        }
+    }
+
+    /**
+     * Returns the packs of the installed files by their paths. Files which were not added with
+     * their pack are missing.
+     *
+     * @return The packs of the installed files.
+     */
+    public Map<String, String> getFilePacks()
+    {
+        return filePacks;
+    }
+
+    /**
+     * Sets the digest of the content of an added file, computed while it was written.
+     *
+     * @param path   The file.
+     * @param digest The SHA-1 digest as hexadecimal string.
+     */
+    public synchronized void setFileDigest(String path, String digest)
+    {
+        fileDigests.put(path, digest);
+    }
+
+    /**
+     * Returns the digests of the content of the unpacked files by their paths. Files which were
+     * not written by the unpacker are missing.
+     *
+     * @return The SHA-1 digests as hexadecimal strings.
+     */
+    public Map<String, String> getFileDigests()
+    {
+        return fileDigests;
+    }
+
     /**
      * Returns the installed files list.
      *
@@ -23,14 +23,17 @@
 package com.izforge.izpack.installer;
 
 import com.izforge.izpack.*;
-import com.izforge.izpack.event.InstallerListener;
 import com.izforge.izpack.util.*;
 
 import java.io.*;
 import java.lang.reflect.Constructor;
 import java.net.URL;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.jar.Pack200;
 
 /**
@@ -45,6 +48,32 @@ public class Unpacker extends UnpackerBase
 
     private Pack200.Unpacker unpacker;
 
+    /**
+     * The variable holding the number of threads writing unpacked files, files are written by the
+     * unpacker thread itself if it is not set or less than 2.
+     */
+    public static final String WRITER_THREADS_VARIABLE = "Unpacker.writerThreads";
+
+    /**
+     * The variable holding the number of threads downloading the packs of a web installer.
+     */
+    public static final String DOWNLOAD_THREADS_VARIABLE = "Unpacker.downloadThreads";
+
+    /**
+     * The variable holding the limit in megabytes of the downloaded packs waiting to be unpacked.
+     */
+    public static final String DOWNLOAD_CACHE_VARIABLE = "Unpacker.downloadCacheSize";
+
+    /**
+     * Downloads the packs of a web installer ahead, null if they are downloaded when reached.
+     */
+    private PackDownloader downloader;
+
+    /**
+     * The downloaded pack files which were added to the uninstall data.
+     */
+    private final Set<String> downloadedFiles = new HashSet<String>();
+
 
     /**
      * The constructor.
@@ -63,6 +92,7 @@ public class Unpacker extends UnpackerBase
     public void run()
     {
         addToInstances();
+        FileWriterPool<WrittenFile> writers = null;
         try
         {
             //
@@ -75,12 +105,23 @@ public class Unpacker extends UnpackerBase
             int npacks = packs.size();
             handler.startAction("Unpacking", npacks);
             udata = UninstallData.getInstance();
+            // the digests of the written files are recorded for the uninstaller
+            MessageDigest digest = IoHelper.createDigest();
             // Custom action listener stuff --- load listeners ----
             List[] customActions = getCustomActions();
+            InstallerListeners listeners = getInstallerListeners(customActions);
             // Custom action listener stuff --- beforePacks ----
-            informListeners(customActions, InstallerListener.BEFORE_PACKS, idata, npacks, handler);
+            listeners.beforePacks(idata, npacks, handler);
             packs = idata.selectedPacks;
             npacks = packs.size();
+            int writerThreads = getThreads(WRITER_THREADS_VARIABLE);
+            // Listeners called for every file expect afterFile right after the file was
+            // written and before the next beforeFile, so the files are written inline then.
+            if (writerThreads > 1 && !listeners.hasFileListeners())
+            {
+                writers = new FileWriterPool<WrittenFile>(writerThreads);
+            }
+            startDownloads(packs);
 
             // We unpack the selected packs
             for (int i = 0; i < npacks; i++)
@@ -107,8 +148,7 @@ public class Unpacker extends UnpackerBase
                 }
 
                 // Custom action listener stuff --- beforePack ----
-                informListeners(customActions, InstallerListener.BEFORE_PACK, packs.get(i),
-                        npacks, handler);
+                listeners.beforePack((Pack) packs.get(i), npacks, handler);
                 ObjectInputStream objIn = new ObjectInputStream(getPackAsStream(p.id, p.uninstall));
 
                 // We unpack the files
@@ -160,10 +200,9 @@ public class Unpacker extends UnpackerBase
                             // If there are custom actions which would be called
                             // at
                             // creating a directory, create it recursively.
-                            List fileListeners = customActions[customActions.length - 1];
-                            if (fileListeners != null && fileListeners.size() > 0)
+                            if (listeners.hasFileListeners())
                             {
-                                mkDirsWithEnhancement(dest, pf, customActions);
+                                mkDirsWithEnhancement(dest, pf, listeners);
                             }
                             else
                             // Create it in on step.
@@ -184,11 +223,16 @@ public class Unpacker extends UnpackerBase
                             continue;
                         }
 
+                        if (writers != null)
+                        {
+                            // a previous file with the same path may still be written
+                            writers.await(pathFile);
+                        }
+
                         // Custom action listener stuff --- beforeFile ----
-                        informListeners(customActions, InstallerListener.BEFORE_FILE, pathFile, pf,
-                                null);
+                        listeners.beforeFile(pathFile, pf);
                         // We add the path to the log,
-                        udata.addFile(path, pack.uninstall);
+                        udata.addFile(path, pack.uninstall, pack.name);
 
                         handler.progress(j, path);
 
@@ -256,7 +300,13 @@ public class Unpacker extends UnpackerBase
 
                         // We copy the file
                         InputStream pis = objIn;
-                        if (pf.isBackReference())
+                        if (pf.hasSharedData())
+                        {
+                            // shared data is stored like in a pack, so no
+                            // skipping is needed
+                            pis = new ObjectInputStream(getSharedDataAsStream(pf.getSharedDataId()));
+                        }
+                        else if (pf.isBackReference())
                         {
                             InputStream is = getPackAsStream(pf.previousPackId, pack.uninstall);
                             pis = new ObjectInputStream(is);
@@ -302,12 +352,48 @@ public class Unpacker extends UnpackerBase
                             }
                         }
 
+                        if (writers != null && !pf.isPack200Jar()
+                                && pf.length() <= FileWriterPool.MAX_BUFFERED_FILE_SIZE)
+                        {
+                            byte[] data = new byte[(int) pf.length()];
+                            int bytesRead = 0;
+                            while (bytesRead < data.length)
+                            {
+                                if (performInterrupted())
+                                { // Interrupt was initiated; perform it.
+                                    if (pis != objIn)
+                                    {
+                                        pis.close();
+                                    }
+                                    return;
+                                }
+                                int bytesInBuffer = pis.read(data, bytesRead, Math.min(data.length - bytesRead, 5120));
+                                if (bytesInBuffer == -1)
+                                {
+                                    throw new IOException("Unexpected end of stream (installer corrupted?)");
+                                }
+                                bytesRead += bytesInBuffer;
+                            }
+                            if (pis != objIn)
+                            {
+                                pis.close();
+                            }
+                            udata.setFileDigest(path, IoHelper.toHexString(digest.digest(data)));
+                            writers.write(pathFile, data, pf.lastModified(), pf.mode(), pf.isExecutable(),
+                                    new WrittenFile(pathFile, pf));
+                            // Custom action listener stuff --- afterFile ----
+                            informWrittenFiles(writers.takeWritten(false), listeners);
+                            continue;
+                        }
+
+                        digest.reset();
                         if (pf.isPack200Jar())
                         {
-                            int key = objIn.readInt();
+                            int key = pf.hasSharedData() ? ((ObjectInputStream) pis).readInt() : objIn.readInt();
                             InputStream pack200Input = Unpacker.class.getResourceAsStream("/packs/pack200-" + key);
                             Pack200.Unpacker unpacker = getPack200Unpacker();
-                            java.util.jar.JarOutputStream jarOut = new java.util.jar.JarOutputStream(new FileOutputStream(pathFile));
+                            java.util.jar.JarOutputStream jarOut = new java.util.jar.JarOutputStream(
+                                    new DigestOutputStream(new FileOutputStream(pathFile), digest));
                             unpacker.unpack(pack200Input, jarOut);
                             jarOut.close();
                         }
@@ -335,11 +421,13 @@ public class Unpacker extends UnpackerBase
                                 }
 
                                 out.write(buffer, 0, bytesInBuffer);
+                                digest.update(buffer, 0, bytesInBuffer);
 
                                 bytesCopied += bytesInBuffer;
                             }
                             out.close();
                         }
+                        udata.setFileDigest(path, IoHelper.toHexString(digest.digest()));
 
                         if (pis != objIn)
                         {
@@ -351,9 +439,9 @@ public class Unpacker extends UnpackerBase
                         {
                             pathFile.setLastModified(pf.lastModified());
                         }
+                        setMode(pathFile, pf.mode(), pf.isExecutable());
                         // Custom action listener stuff --- afterFile ----
-                        informListeners(customActions, InstallerListener.AFTER_FILE, pathFile, pf,
-                                null);
+                        listeners.afterFile(pathFile, pf);
 
                     }
                     else
@@ -365,6 +453,12 @@ public class Unpacker extends UnpackerBase
                     }
                 }
 
+                if (writers != null)
+                {
+                    // Custom action listener stuff --- afterFile ----
+                    informWrittenFiles(writers.takeWritten(true), listeners);
+                }
+
                 // Load information about parsable files
                 int numParsables = objIn.readInt();
                 for (int k = 0; k < numParsables; k++)
@@ -433,12 +527,13 @@ public class Unpacker extends UnpackerBase
                 }
 
                 // Custom action listener stuff --- afterPack ----
-                informListeners(customActions, InstallerListener.AFTER_PACK, packs.get(i),
-                        i, handler);
+                listeners.afterPack((Pack) packs.get(i), i, handler);
             }
 
             // We use the scripts parser
             ScriptParser parser = new ScriptParser(parsables, vs);
+            parser.setThreads(getThreads(ScriptParser.THREADS_VARIABLE));
+            parser.setUninstallData(udata);
             parser.parseFiles();
             if (performInterrupted())
             { // Interrupt was initiated; perform it.
@@ -470,7 +565,7 @@ public class Unpacker extends UnpackerBase
             }
 
             // Custom action listener stuff --- afterPacks ----
-            informListeners(customActions, InstallerListener.AFTER_PACKS, idata, handler, null);
+            listeners.afterPacks(idata, handler);
             if (performInterrupted())
             { // Interrupt was initiated; perform it.
                 return;
@@ -500,10 +595,55 @@ public class Unpacker extends UnpackerBase
         }
         finally
         {
+            if (writers != null)
+            {
+                writers.shutdown();
+            }
+            if (downloader != null)
+            {
+                downloader.shutdown();
+                downloader = null;
+            }
             removeFromInstances();
         }
     }
 
+    /**
+     * Informs the listeners about files written by the writer threads.
+     *
+     * @param files     the written files, in unpacking order
+     * @param listeners the installer listeners
+     * @throws Exception if a listener fails
+     */
+    private void informWrittenFiles(List<WrittenFile> files, InstallerListeners listeners)
+            throws Exception
+    {
+        if (!listeners.hasAfterFileListeners())
+        {
+            return;
+        }
+        for (WrittenFile file : files)
+        {
+            listeners.afterFile(file.path, file.packFile);
+        }
+    }
+
+    /**
+     * A file handed over to the writer threads.
+     */
+    private static class WrittenFile
+    {
+        private final File path;
+
+        private final PackFile packFile;
+
+        WrittenFile(File path, PackFile packFile)
+        {
+            this.path = path;
+            this.packFile = packFile;
+        }
+    }
+
     private Pack200.Unpacker getPack200Unpacker()
     {
         if (unpacker == null)
@@ -513,6 +653,62 @@ public class Unpacker extends UnpackerBase
         return unpacker;
     }
 
+    /**
+     * Starts downloading the packs of a web installer in the background, if the number of
+     * download threads is set.
+     *
+     * @param packs the selected packs
+     */
+    private void startDownloads(List packs)
+    {
+        String webDirURL = idata.info.getWebDirURL();
+        if (webDirURL == null || idata.getVariable(DOWNLOAD_THREADS_VARIABLE) == null)
+        {
+            return;
+        }
+        int threads = getThreads(DOWNLOAD_THREADS_VARIABLE);
+        if (threads < 1)
+        {
+            return;
+        }
+        long maxCachedBytes = PackDownloader.DEFAULT_MAX_CACHED_BYTES;
+        String cacheSize = idata.getVariable(DOWNLOAD_CACHE_VARIABLE);
+        if (cacheSize != null)
+        {
+            try
+            {
+                maxCachedBytes = Long.parseLong(cacheSize.trim()) * 1024 * 1024;
+            }
+            catch (NumberFormatException e)
+            {
+                Debug.trace("Invalid download cache size in " + DOWNLOAD_CACHE_VARIABLE + ": "
+                        + cacheSize);
+            }
+        }
+        String tf = IoHelper.translatePath(idata.info.getUninstallerPath() + Unpacker.tempSubPath, vs);
+        downloader = new PackDownloader(new File(tf), threads, maxCachedBytes);
+        for (Object pack : packs)
+        {
+            Pack p = (Pack) pack;
+            if (p.hasCondition() && rules != null && !rules.isConditionTrue(p.getCondition()))
+            {
+                // the pack is skipped when it is reached
+                continue;
+            }
+            downloader.prefetch(getPackURL(webDirURL, p.id));
+        }
+    }
+
+    /**
+     * Returns the URL of the jar holding a pack of a web installer.
+     */
+    private String getPackURL(String webDirURL, String packid)
+    {
+        // See compiler.Packager#getJarOutputStream for the counterpart
+        String baseName = idata.info.getInstallerBase();
+        return webDirURL + "/" + baseName + ".pack-" + packid + ".jar";
+    }
+
     /**
      * Returns a stream to a pack, location depending on if it's web based.
      *
@@ -537,17 +733,35 @@ public class Unpacker extends UnpackerBase
         {
             // TODO: Look first in same directory as primary jar
             // This may include prompting for changing of media
-            // TODO: download and cache them all before starting copy process
-
-            // See compiler.Packager#getJarOutputStream for the counterpart
-            String baseName = idata.info.getInstallerBase();
-            String packURL = webDirURL + "/" + baseName + ".pack" + packid + ".jar";
+            String packURL = getPackURL(webDirURL, packid.substring(1));
             String tf = IoHelper.translatePath(idata.info.getUninstallerPath()+ Unpacker.tempSubPath, vs);
-            String tempfile;
+            String tempfile = null;
             try
             {
-                tempfile = WebRepositoryAccessor.getCachedUrl(packURL, tf);
-                udata.addFile(tempfile, uninstall);
+                if (downloader != null)
+                {
+                    try
+                    {
+                        tempfile = "file:///" + downloader.get(packURL).getAbsolutePath();
+                    }
+                    catch (IOException e)
+                    {
+                        // the serial download below may ask for a proxy
+                        Debug.trace("Download of " + packURL + " failed: " + e);
+                    }
+                }
+                if (tempfile == null)
+                {
+                    tempfile = WebRepositoryAccessor.getCachedUrl(packURL, tf);
+                }
+                if (downloadedFiles.add(tempfile))
+                {
+                    udata.addFile(tempfile, uninstall);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                throw new InstallerException("Installation cancelled", e);
             }
             catch (Exception e)
             {
@@ -574,6 +788,37 @@ public class Unpacker extends UnpackerBase
                 throw new InstallerException(url.toString() + " not available", new FileNotFoundException(url.toString()));
             }
         }
+        return getDecodedStream(in);
+    }
+
+    /**
+     * Returns a stream to the data of a file shared between packs. Shared data is always
+     * located in the primary jar.
+     *
+     * @param id the number of the shared entry
+     * @return The stream or null if it could not be found.
+     * @throws Exception Description of the Exception
+     */
+    private InputStream getSharedDataAsStream(int id) throws Exception
+    {
+        InputStream in = Unpacker.class.getResourceAsStream("/packs/shared-" + id);
+        if (in == null)
+        {
+            throw new InstallerException("Shared data " + id + " not available (installer corrupted?)");
+        }
+        return getDecodedStream(in);
+    }
+
+    /**
+     * Wraps the given stream with the pack decoder if the packs are compressed by a pack
+     * compressor.
+     *
+     * @param in the raw stream of a pack entry
+     * @return the decoded stream
+     * @throws Exception Description of the Exception
+     */
+    private InputStream getDecodedStream(InputStream in) throws Exception
+    {
         if (in != null && idata.info.getPackDecoderClassName() != null)
         {
             Class<Object> decoder = (Class<Object>) Class.forName(idata.info.getPackDecoderClassName());
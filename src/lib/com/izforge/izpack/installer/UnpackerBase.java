@@ -28,7 +28,9 @@ import com.izforge.izpack.event.InstallerListener;
 import com.izforge.izpack.rules.RulesEngine;
 import com.izforge.izpack.util.AbstractUIProgressHandler;
 import com.izforge.izpack.util.Debug;
+import com.izforge.izpack.util.FilePermissions;
 import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.OsVersion;
 import com.izforge.izpack.util.VariableSubstitutor;
 import org.apache.regexp.RE;
 import org.apache.regexp.RECompiler;
@@ -283,7 +285,7 @@ public abstract class UnpackerBase implements IUnpacker
      *
      * @return whether interrupt was initiate or not
      */
-    private boolean shouldInterrupt()
+    boolean shouldInterrupt()
     {
         synchronized (instances)
         {
@@ -458,69 +460,47 @@ public abstract class UnpackerBase implements IUnpacker
      * @param firstParam    first parameter for the call
      * @param secondParam   second parameter for the call
      * @param thirdParam    third parameter for the call
+     * @deprecated use the typed methods of {@link #getInstallerListeners(List[])}, which sort the
+     *             listeners only once
      */
+    @Deprecated
     protected void informListeners(List[] customActions, int action, Object firstParam,
                                    Object secondParam, Object thirdParam) throws Exception
     {
-        List listener = null;
-        // select the right action list.
+        InstallerListeners listeners = getInstallerListeners(customActions);
         switch (action)
         {
             case InstallerListener.BEFORE_FILE:
+                listeners.beforeFile((File) firstParam, (PackFile) secondParam);
+                break;
             case InstallerListener.AFTER_FILE:
+                listeners.afterFile((File) firstParam, (PackFile) secondParam);
+                // the registry lives for this call only
+                listeners.flush();
+                break;
             case InstallerListener.BEFORE_DIR:
+                listeners.beforeDir((File) firstParam, (PackFile) secondParam);
+                break;
             case InstallerListener.AFTER_DIR:
-                listener = customActions[customActions.length - 1];
+                listeners.afterDir((File) firstParam, (PackFile) secondParam);
                 break;
-            default:
-                listener = customActions[0];
+            case InstallerListener.BEFORE_PACK:
+                listeners.beforePack((Pack) firstParam, (Integer) secondParam,
+                        (AbstractUIProgressHandler) thirdParam);
+                break;
+            case InstallerListener.AFTER_PACK:
+                listeners.afterPack((Pack) firstParam, (Integer) secondParam,
+                        (AbstractUIProgressHandler) thirdParam);
+                break;
+            case InstallerListener.BEFORE_PACKS:
+                listeners.beforePacks((AutomatedInstallData) firstParam, (Integer) secondParam,
+                        (AbstractUIProgressHandler) thirdParam);
+                break;
+            case InstallerListener.AFTER_PACKS:
+                listeners.afterPacks((AutomatedInstallData) firstParam,
+                        (AbstractUIProgressHandler) secondParam);
                 break;
-        }
-        if (listener == null)
-        {
-            return;
-        }
-        // Iterate the action list.
-        Iterator iter = listener.iterator();
-        while (iter.hasNext())
-        {
-            if (shouldInterrupt())
-            {
-                return;
-            }
-            InstallerListener il = (InstallerListener) iter.next();
-            switch (action)
-            {
-                case InstallerListener.BEFORE_FILE:
-                    il.beforeFile((File) firstParam, (PackFile) secondParam);
-                    break;
-                case InstallerListener.AFTER_FILE:
-                    il.afterFile((File) firstParam, (PackFile) secondParam);
-                    break;
-                case InstallerListener.BEFORE_DIR:
-                    il.beforeDir((File) firstParam, (PackFile) secondParam);
-                    break;
-                case InstallerListener.AFTER_DIR:
-                    il.afterDir((File) firstParam, (PackFile) secondParam);
-                    break;
-                case InstallerListener.BEFORE_PACK:
-                    il.beforePack((Pack) firstParam, (Integer) secondParam,
-                            (AbstractUIProgressHandler) thirdParam);
-                    break;
-                case InstallerListener.AFTER_PACK:
-                    il.afterPack((Pack) firstParam, (Integer) secondParam,
-                            (AbstractUIProgressHandler) thirdParam);
-                    break;
-                case InstallerListener.BEFORE_PACKS:
-                    il.beforePacks((AutomatedInstallData) firstParam, (Integer) secondParam,
-                            (AbstractUIProgressHandler) thirdParam);
-                    break;
-                case InstallerListener.AFTER_PACKS:
-                    il.afterPacks((AutomatedInstallData) firstParam,
-                            (AbstractUIProgressHandler) secondParam);
-                    break;
 
-            }
         }
     }
 
@@ -567,19 +547,64 @@ public abstract class UnpackerBase implements IUnpacker
         return (retval);
     }
 
+    /**
+     * Returns the installer listeners of the given custom actions, sorted by the events they
+     * want.
+     *
+     * @param customActions the custom actions returned by {@link #getCustomActions()}
+     * @return the installer listeners
+     */
+    protected InstallerListeners getInstallerListeners(List[] customActions)
+    {
+        return new InstallerListeners(customActions[AutomatedInstallData.INSTALLER_LISTENER_INDEX],
+                this);
+    }
+
+    /**
+     * Sets the permissions a pack file carries on the unpacked file. Failures are only traced,
+     * the permissions of executables are set again when they are processed.
+     *
+     * @param file       the unpacked file
+     * @param mode       the permission bits of the pack file, or -1 to keep the default permissions
+     * @param executable whether the execute permission is added to the default permissions
+     */
+    static void setMode(File file, int mode, boolean executable)
+    {
+        if ((mode < 0 && !executable) || !OsVersion.IS_UNIX)
+        {
+            return;
+        }
+        if (mode < 0)
+        {
+            if (!FilePermissions.setExecutable(file))
+            {
+                Debug.trace("Could not make " + file + " executable");
+            }
+            return;
+        }
+        try
+        {
+            IoHelper.chmod(file, Integer.toOctalString(mode));
+        }
+        catch (IOException e)
+        {
+            Debug.trace("Could not set the permissions of " + file + ": " + e);
+        }
+    }
+
     // This method is only used if a file related custom action exist.
     /**
      * Creates the given directory recursive and calls the method "afterDir" of each listener with
      * the current file object and the pack file object. On error an exception is raised.
      *
-     * @param dest          the directory which should be created
-     * @param pf            current pack file object
-     * @param customActions all defined custom actions
+     * @param dest      the directory which should be created
+     * @param pf        current pack file object
+     * @param listeners the installer listeners
      * @return false on error, true else
      * @throws Exception
      */
 
-    protected boolean mkDirsWithEnhancement(File dest, PackFile pf, List[] customActions)
+    protected boolean mkDirsWithEnhancement(File dest, PackFile pf, InstallerListeners listeners)
             throws Exception
     {
         String path = "unknown";
@@ -591,17 +616,17 @@ public abstract class UnpackerBase implements IUnpacker
         {
             if (dest.getParentFile().exists())
             {
-                informListeners(customActions, InstallerListener.BEFORE_DIR, dest, pf, null);
+                listeners.beforeDir(dest, pf);
             }
             if (!dest.mkdir())
             {
-                mkDirsWithEnhancement(dest.getParentFile(), pf, customActions);
+                mkDirsWithEnhancement(dest.getParentFile(), pf, listeners);
                 if (!dest.mkdir())
                 {
                     dest = null;
                 }
             }
-            informListeners(customActions, InstallerListener.AFTER_DIR, dest, pf, null);
+            listeners.afterDir(dest, pf);
         }
         if (dest == null)
         {
@@ -612,6 +637,24 @@ public abstract class UnpackerBase implements IUnpacker
         return (true);
     }
 
+    /**
+     * Creates the given directory recursive and calls the method "afterDir" of each listener with
+     * the current file object and the pack file object. On error an exception is raised.
+     *
+     * @param dest          the directory which should be created
+     * @param pf            current pack file object
+     * @param customActions all defined custom actions
+     * @return false on error, true else
+     * @throws Exception
+     * @deprecated use {@link #mkDirsWithEnhancement(File, PackFile, InstallerListeners)}
+     */
+    @Deprecated
+    protected boolean mkDirsWithEnhancement(File dest, PackFile pf, List[] customActions)
+            throws Exception
+    {
+        return mkDirsWithEnhancement(dest, pf, getInstallerListeners(customActions));
+    }
+
     // CUSTOM ACTION STUFF -------------- end -----------------
 
     /**
@@ -947,6 +990,29 @@ public abstract class UnpackerBase implements IUnpacker
         fout.close();
     }
     
+    /**
+     * Returns the number of threads to use for a task.
+     *
+     * @param variable the name of the variable holding the number of threads
+     * @return the value of the variable or 1 if it is not a number
+     */
+    protected int getThreads(String variable)
+    {
+        String threads = idata.getVariable(variable);
+        if (threads != null)
+        {
+            try
+            {
+                return Integer.parseInt(threads.trim());
+            }
+            catch (NumberFormatException e)
+            {
+                Debug.trace("Invalid number of threads in " + variable + ": " + threads);
+            }
+        }
+        return 1;
+    }
+
     protected File getAbsolutInstallSource() throws MalformedURLException
     {
         if (absolutInstallSource == null)
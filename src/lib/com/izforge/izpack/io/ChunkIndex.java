@@ -0,0 +1,172 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/ http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.izforge.izpack.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The index of the independently compressed chunks of a volume set. For every chunk, the index
+ * holds the uncompressed position of its first byte, the volume it is stored in and the offset of
+ * the chunk in that volume file. The chunks are kept in the order of their positions.
+ *
+ * @see FileSpanningOutputStream#setChunkSize(long)
+ * @see FileSpanningInputStream#seek(long)
+ */
+public class ChunkIndex
+{
+    private long[] positions = new long[16];
+
+    private int[] volumes = new int[16];
+
+    private long[] offsets = new long[16];
+
+    private int size = 0;
+
+    /**
+     * Adds a chunk. Chunks have to be added in the order of their positions.
+     *
+     * @param position the uncompressed position of the first byte of the chunk
+     * @param volume   the index of the volume containing the chunk
+     * @param offset   the offset of the chunk in the volume file
+     */
+    public void add(long position, int volume, long offset)
+    {
+        if (size > 0 && position <= positions[size - 1])
+        {
+            throw new IllegalArgumentException("Chunk at " + position + " is out of order");
+        }
+        if (size == positions.length)
+        {
+            long[] newpositions = new long[size * 2];
+            int[] newvolumes = new int[size * 2];
+            long[] newoffsets = new long[size * 2];
+            System.arraycopy(positions, 0, newpositions, 0, size);
+            System.arraycopy(volumes, 0, newvolumes, 0, size);
+            System.arraycopy(offsets, 0, newoffsets, 0, size);
+            positions = newpositions;
+            volumes = newvolumes;
+            offsets = newoffsets;
+        }
+        positions[size] = position;
+        volumes[size] = volume;
+        offsets[size] = offset;
+        size++;
+    }
+
+    /**
+     * Returns the number of chunks
+     *
+     * @return the number of chunks
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    public long getPosition(int chunk)
+    {
+        return positions[chunk];
+    }
+
+    public int getVolume(int chunk)
+    {
+        return volumes[chunk];
+    }
+
+    public long getOffset(int chunk)
+    {
+        return offsets[chunk];
+    }
+
+    /**
+     * Returns the chunk containing the given position, i.e. the last chunk starting at or before
+     * the position.
+     *
+     * @param position the uncompressed position
+     * @return the index of the chunk or -1, if the position lies before the first chunk
+     */
+    public int find(long position)
+    {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            if (positions[middle] <= position)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Returns the chunk starting exactly at the given position.
+     *
+     * @param position the uncompressed position
+     * @return the index of the chunk or -1, if no chunk starts at the position
+     */
+    public int indexOf(long position)
+    {
+        int chunk = find(position);
+        if (chunk >= 0 && positions[chunk] == position)
+        {
+            return chunk;
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param out the output to write to
+     * @throws IOException
+     */
+    public void writeTo(DataOutput out) throws IOException
+    {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++)
+        {
+            out.writeLong(positions[i]);
+            out.writeInt(volumes[i]);
+            out.writeLong(offsets[i]);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the index
+     * @throws IOException
+     */
+    public static ChunkIndex readFrom(DataInput in) throws IOException
+    {
+        ChunkIndex index = new ChunkIndex();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            index.add(in.readLong(), in.readInt(), in.readLong());
+        }
+        return index;
+    }
+}
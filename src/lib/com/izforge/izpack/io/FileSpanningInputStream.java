@@ -52,8 +52,27 @@ public class FileSpanningInputStream extends InputStream
 
     protected byte[] magicnumber;
 
+    // the index of the chunks, null if the volumes aren't chunked
+    protected ChunkIndex chunks;
+
     public FileSpanningInputStream(File volume, int volumestotal) throws IOException
     {
+        this(volume, volumestotal, null);
+    }
+
+    /**
+     * Creates a stream over chunked volumes, which allows to {@link #seek(long)} to any position
+     * without inflating the data in between.
+     *
+     * @param volume       the first volume
+     * @param volumestotal the amount of volumes
+     * @param chunks       the index of the chunks or null, if the volumes aren't chunked
+     * @throws IOException
+     */
+    public FileSpanningInputStream(File volume, int volumestotal, ChunkIndex chunks)
+            throws IOException
+    {
+        this.chunks = chunks;
         fileinputstream = new FileInputStream(volume);
         zippedinputstream = new GZIPInputStream(fileinputstream);
         currentvolumeindex = 0;
@@ -165,6 +184,114 @@ public class FileSpanningInputStream extends InputStream
         return true;
     }
 
+    /**
+     * Opens the stream to the next data after the end of a gzip member was reached. In chunked
+     * volumes, this is the next chunk of the current volume, otherwise the next volume.
+     *
+     * @return true - the next stream has been opened false - the last volume was reached
+     * @throws IOException
+     */
+    private boolean createInputStreamToNextData() throws IOException
+    {
+        // close the inputstream
+        try
+        {
+            zippedinputstream.close();
+        }
+        catch (Exception e)
+        {
+            // do nothing
+        }
+        if (chunks != null)
+        {
+            int chunk = chunks.indexOf(filepointer);
+            if (chunk >= 0 && chunks.getVolume(chunk) == currentvolumeindex)
+            {
+                openChunk(chunk);
+                return true;
+            }
+        }
+        return createInputStreamToNextVolume();
+    }
+
+    /**
+     * Opens the stream at the beginning of the given chunk.
+     *
+     * @param chunk the index of the chunk
+     * @throws IOException
+     */
+    private void openChunk(int chunk) throws IOException
+    {
+        int volumeindex = chunks.getVolume(chunk);
+        String chunkvolumename = volumeindex == 0 ? volumename : volumename + "." + volumeindex;
+        File chunkvolumefile = new File(chunkvolumename);
+        try
+        {
+            zippedinputstream.close();
+        }
+        catch (Exception e)
+        {
+            // do nothing
+        }
+        if (!chunkvolumefile.exists())
+        {
+            // the stream is left as if the volume was the next one to read
+            currentvolumeindex = volumeindex - 1;
+            nextvolumenotfound = true;
+            Debug.trace("volume not found");
+            throw new VolumeNotFoundException(chunkvolumename + "was not found.", chunkvolumename);
+        }
+        if (volumeindex != currentvolumeindex)
+        {
+            // check magic number
+            fileinputstream = new FileInputStream(chunkvolumefile);
+            zippedinputstream = new GZIPInputStream(fileinputstream);
+            boolean valid = this.isMagicNumberValid();
+            zippedinputstream.close();
+            if (!valid)
+            {
+                currentvolumeindex = volumeindex - 1;
+                nextvolumenotfound = true;
+                throw new CorruptVolumeException(chunkvolumename
+                        + "was found, but has magic number error. Maybe not the right version?",
+                        chunkvolumename);
+            }
+        }
+        fileinputstream = new FileInputStream(chunkvolumefile);
+        fileinputstream.getChannel().position(chunks.getOffset(chunk));
+        zippedinputstream = new GZIPInputStream(fileinputstream);
+        currentvolumeindex = volumeindex;
+        filepointer = chunks.getPosition(chunk);
+        nextvolumenotfound = false;
+    }
+
+    /**
+     * Moves to the given position. In chunked volumes, the chunk containing the position is
+     * opened directly, unless the position lies ahead in the chunk being read. Without chunks,
+     * the stream can only be moved forward by reading up to the position.
+     *
+     * @param position the global position in all volumes
+     * @throws IOException
+     */
+    public void seek(long position) throws IOException
+    {
+        if (chunks != null)
+        {
+            int chunk = chunks.find(position);
+            if (chunk >= 0
+                    && (nextvolumenotfound || position < filepointer || chunks.find(filepointer) != chunk))
+            {
+                Debug.trace("Seeking to chunk " + chunk + " for position " + position);
+                openChunk(chunk);
+            }
+        }
+        if (position < filepointer)
+        {
+            throw new IOException("Can't seek backwards to " + position + " in unchunked volumes");
+        }
+        this.skip(position - filepointer);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -204,26 +331,15 @@ public class FileSpanningInputStream extends InputStream
             createInputStreamToNextVolume();
         }
         int nextbyte = zippedinputstream.read();
-        filepointer++;
-        if (nextbyte == EOF)
+        // if end of file is reached, try to open InputStream to next chunk or volume
+        while (nextbyte == EOF && createInputStreamToNextData())
         {
-            // if end of file is reached, try to open InputStream to next volume
-            // close the inputstream
-            try
-            {
-                zippedinputstream.close();
-            }
-            catch (Exception e)
-            {
-                // do nothing
-            }
-
-            if (createInputStreamToNextVolume())
-            {
-                // try to read next byte
-                nextbyte = zippedinputstream.read();
-                filepointer++;
-            }
+            // try to read next byte
+            nextbyte = zippedinputstream.read();
+        }
+        if (nextbyte != EOF)
+        {
+            filepointer++;
         }
         return nextbyte;
     }
@@ -241,29 +357,16 @@ public class FileSpanningInputStream extends InputStream
             createInputStreamToNextVolume();
         }
         int bytesread = zippedinputstream.read(b, off, len);
-        filepointer += bytesread;
-        if (bytesread == EOF)
+        // try to open next chunk or volume, a chunk may also end right after the magic number
+        while (bytesread == EOF && createInputStreamToNextData())
         {
-            filepointer++; // bytesread was -1;
-            System.out.println("EOF reached.");
-            // close the inputstream
-            try
-            {
-                zippedinputstream.close();
-            }
-            catch (Exception e)
-            {
-                // do nothing
-            }
-            // try to open next volume
-            if (createInputStreamToNextVolume())
-            {
-                // try to read next bytes
-                Debug.trace("next volume opened, continuing read");
-                bytesread = zippedinputstream.read(b, off, len);
-                filepointer += bytesread;
-                // System.out.println("read into buffer: " + bytesread + " Bytes");
-            }
+            // try to read next bytes
+            Debug.trace("next stream opened, continuing read");
+            bytesread = zippedinputstream.read(b, off, len);
+        }
+        if (bytesread != EOF)
+        {
+            filepointer += bytesread;
         }
         // System.out.println("return from read into buffer: " + bytesread + " Bytes");
         return bytesread;
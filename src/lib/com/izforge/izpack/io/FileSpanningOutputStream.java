@@ -21,6 +21,7 @@ import com.izforge.izpack.util.Debug;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Date;
@@ -62,6 +63,9 @@ public class FileSpanningOutputStream extends OutputStream
 
     public static final int MAGIC_NUMER_LENGTH = 10;
 
+    // the default uncompressed size of the independently compressed chunks
+    public static final long DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
     // the current file this stream writes to
     protected File currentfile;
 
@@ -74,6 +78,9 @@ public class FileSpanningOutputStream extends OutputStream
     // a normal file outputstream for writting to the current volume
     private FileOutputStream fileoutputstream;
 
+    // counts the compressed bytes written to the current volume
+    private CountingOutputStream countingoutputstream;
+
     private GZIPOutputStream zippedoutputstream;
 
     // 
@@ -82,6 +89,18 @@ public class FileSpanningOutputStream extends OutputStream
     // the current position in the open file
     protected long filepointer;
 
+    // the uncompressed size of a chunk, 0 if the volumes aren't chunked
+    private long chunksize = 0;
+
+    // the index of the written chunks
+    private ChunkIndex chunks;
+
+    // the position of the current chunk
+    private long chunkposition;
+
+    // whether the next written byte has to start a new chunk
+    private boolean chunkpending = false;
+
     protected long totalbytesofpreviousvolumes;
 
     /**
@@ -157,7 +176,8 @@ public class FileSpanningOutputStream extends OutputStream
             throws IOException
     {
         fileoutputstream = new FileOutputStream(volume);
-        zippedoutputstream = new GZIPOutputStream(fileoutputstream, 256);
+        countingoutputstream = new CountingOutputStream(fileoutputstream);
+        zippedoutputstream = new GZIPOutputStream(countingoutputstream, 256);
         currentfile = volume;
         this.currentvolumeindex = currentvolume;
         this.maxvolumesize = maxvolumesize;
@@ -173,11 +193,10 @@ public class FileSpanningOutputStream extends OutputStream
         {
             volumename = volabsolutePath;
         }
-        long oldfilepointer = filepointer;
         // write magic number into output stream
-        this.write(magicnumber);
-        // reset filepointer
-        filepointer = oldfilepointer;
+        zippedoutputstream.write(magicnumber);
+        // the data of a chunked volume starts with a new chunk after the magic number
+        chunkpending = true;
     }
 
     /**
@@ -207,7 +226,8 @@ public class FileSpanningOutputStream extends OutputStream
     }
 
     /**
-     * Returns the size of the current volume
+     * Returns the size of the current volume. The size is tracked while writing, the volume is
+     * neither flushed nor looked up on disk.
      *
      * @return the size of the current volume FILE_NOT_AVAILABLE, if there's no current volume
      */
@@ -217,28 +237,18 @@ public class FileSpanningOutputStream extends OutputStream
         {
             return FILE_NOT_AVAILABLE;
         }
-        try
-        {
-            flush();
-        }
-        catch (IOException e)
-        {
-            e.printStackTrace();
-        }
-        // create a new instance
-        currentfile = new File(currentfile.getAbsolutePath());
+        long length = countingoutputstream.getCount();
         if (currentvolumeindex == 0)
         {
             // this is the first volume, add the additional free space
             // and add a reserve for overhead and not yet written data
-            return currentfile.length() + this.firstvolumefreespacesize
-                    + Math.round(0.001 * currentfile.length());
+            return length + this.firstvolumefreespacesize + Math.round(0.001 * length);
         }
         else
         {
             // not the first volume, just return the actual length
             // and add a reserve for overhead and not yet written data
-            return currentfile.length() + Math.round(0.001 * currentfile.length());
+            return length + Math.round(0.001 * length);
         }
     }
 
@@ -251,7 +261,7 @@ public class FileSpanningOutputStream extends OutputStream
     {
         // close current stream
         close();
-        totalbytesofpreviousvolumes = currentfile.length();
+        totalbytesofpreviousvolumes = countingoutputstream.getCount();
         currentvolumeindex++;
         // get the name of the next volume
         String nextvolumename = volumename + "." + currentvolumeindex;
@@ -297,6 +307,7 @@ public class FileSpanningOutputStream extends OutputStream
             this.createStreamToNextVolume();
         }
         // enough space available, just write to the outputstream
+        prepareChunk();
         zippedoutputstream.write(b, off, len);
         // increase filepointer by written bytes
         filepointer += len;
@@ -318,6 +329,7 @@ public class FileSpanningOutputStream extends OutputStream
         long availablebytes = maxvolumesize - getCurrentVolumeSize();
         if (availablebytes >= 1)
         {
+            prepareChunk();
             zippedoutputstream.write(b);
             // increase filepointer by written byte
             filepointer++;
@@ -326,12 +338,60 @@ public class FileSpanningOutputStream extends OutputStream
         {
             // create next volume
             this.createStreamToNextVolume();
+            prepareChunk();
             zippedoutputstream.write(b);
             // increase filepointer by written byte
             filepointer++;
         }
     }
 
+    /**
+     * Starts a new chunk before the next bytes are written, if the volumes are chunked and the
+     * current chunk is full or the volume has just been started. A chunk is a separate gzip
+     * member, so it can be inflated without reading the chunks before it.
+     *
+     * @throws IOException
+     */
+    private void prepareChunk() throws IOException
+    {
+        if (chunks == null || (!chunkpending && filepointer - chunkposition < chunksize))
+        {
+            return;
+        }
+        // finish the current gzip member, the volume file stays open
+        zippedoutputstream.close();
+        chunks.add(filepointer, currentvolumeindex, countingoutputstream.getCount());
+        zippedoutputstream = new GZIPOutputStream(countingoutputstream, 256);
+        chunkposition = filepointer;
+        chunkpending = false;
+    }
+
+    /**
+     * Sets the uncompressed size of the independently compressed chunks the volumes are split
+     * into. Chunking has to be enabled before anything is written.
+     *
+     * @param chunksize the chunk size, 0 disables chunking
+     */
+    public void setChunkSize(long chunksize)
+    {
+        if (filepointer > 0)
+        {
+            throw new IllegalStateException("Data has already been written");
+        }
+        this.chunksize = chunksize;
+        chunks = chunksize > 0 ? new ChunkIndex() : null;
+    }
+
+    /**
+     * Returns the index of the chunks written so far.
+     *
+     * @return the chunk index or null, if the volumes aren't chunked
+     */
+    public ChunkIndex getChunkIndex()
+    {
+        return chunks;
+    }
+
     /**
      * @see java.io.OutputStream#flush()
      */
@@ -377,11 +437,50 @@ public class FileSpanningOutputStream extends OutputStream
     {
         this.flush();
         // return filepointer;
-        return totalbytesofpreviousvolumes + currentfile.length();
+        return totalbytesofpreviousvolumes + countingoutputstream.getCount();
     }
 
     public long getFilepointer()
     {
         return filepointer;
     }
+
+    /**
+     * An outputstream counting the bytes written through it.
+     */
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private long count = 0;
+
+        public CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Only flushes, the volume file is closed by the spanning stream. This allows to finish
+         * a gzip member without closing the volume.
+         */
+        public void close() throws IOException
+        {
+            flush();
+        }
+    }
 }
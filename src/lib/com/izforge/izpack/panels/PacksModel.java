@@ -70,6 +70,15 @@ class PacksModel extends AbstractTableModel
     // Map to hold the object name relationship
     Map<String, Integer> namesPos;
 
+    // The positions of the packs each pack depends on
+    private int[][] dependencyPos;
+
+    // The positions of the packs depending on each pack
+    private int[][] revDependencyPos;
+
+    // The positions of the packs of each exclude group
+    private Map<String, int[]> excludeGroupsPos;
+
     // reference to the RulesEngine for validating conditions
     private RulesEngine rules;
 
@@ -153,6 +162,7 @@ class PacksModel extends AbstractTableModel
         langpack = panel.getLangpack();
         checkValues = new int[packs.size()];
         reverseDeps();
+        buildGraph();
         initvalues();
         this.updateConditions(true);
         refreshPacksToInstall();
@@ -200,10 +210,9 @@ class PacksModel extends AbstractTableModel
         {
             changes = false;
             // look for packages,
-            for (Object pack1 : packs)
+            for (int pos = 0; pos < packs.size(); pos++)
             {
-                Pack pack = (Pack) pack1;
-                int pos = getPos(pack.name);
+                Pack pack = (Pack) packs.get(pos);
                 Debug.trace("Conditions fulfilled for: " + pack.name + "?");
                 if (!this.rules.canInstallPack(pack.id, this.variables))
                 {
@@ -271,7 +280,11 @@ class PacksModel extends AbstractTableModel
 
     }
 
-    private void initvalues()
+    /**
+     * Creates the position maps and the dependency graph on pack positions, so that changes of
+     * the selection only follow the edges of the packs involved.
+     */
+    private void buildGraph()
     {
         // name to pack position map
         namesPos = new HashMap<String, Integer>();
@@ -280,6 +293,66 @@ class PacksModel extends AbstractTableModel
             Pack pack = (Pack) packs.get(i);
             namesPos.put(pack.name, i);
         }
+
+        dependencyPos = new int[packs.size()][];
+        revDependencyPos = new int[packs.size()][];
+        Map<String, List<Integer>> groups = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < packs.size(); i++)
+        {
+            Pack pack = (Pack) packs.get(i);
+            dependencyPos[i] = toPositions(pack.dependencies);
+            revDependencyPos[i] = toPositions(pack.revDependencies);
+            if (pack.excludeGroup != null)
+            {
+                List<Integer> group = groups.get(pack.excludeGroup);
+                if (group == null)
+                {
+                    group = new ArrayList<Integer>();
+                    groups.put(pack.excludeGroup, group);
+                }
+                group.add(i);
+            }
+        }
+
+        excludeGroupsPos = new HashMap<String, int[]>();
+        for (Map.Entry<String, List<Integer>> group : groups.entrySet())
+        {
+            int[] positions = new int[group.getValue().size()];
+            for (int i = 0; i < positions.length; i++)
+            {
+                positions[i] = group.getValue().get(i);
+            }
+            excludeGroupsPos.put(group.getKey(), positions);
+        }
+    }
+
+    private int[] toPositions(List<String> names)
+    {
+        if (names == null)
+        {
+            return new int[0];
+        }
+        int[] positions = new int[names.size()];
+        int count = 0;
+        for (String name : names)
+        {
+            Integer pos = namesPos.get(name);
+            if (pos != null)
+            {
+                positions[count++] = pos;
+            }
+        }
+        if (count < positions.length)
+        {
+            int[] known = new int[count];
+            System.arraycopy(positions, 0, known, 0, count);
+            return known;
+        }
+        return positions;
+    }
+
+    private void initvalues()
+    {
         // Init to the first values
         for (int i = 0; i < packs.size(); i++)
         {
@@ -297,74 +370,50 @@ class PacksModel extends AbstractTableModel
             Pack pack = (Pack) packs.get(i);
             if (checkValues[i] == 0)
             {
-                List<String> deps = pack.revDependencies;
-                for (int j = 0; deps != null && j < deps.size(); j++)
+                for (int pos : revDependencyPos[i])
                 {
-                    String name = deps.get(j);
-                    int pos = getPos(name);
                     checkValues[pos] = -2;
                 }
             }
             // for mutual exclusion, uncheck uncompatible packs too
             // (if available in the current installGroup)
-
-            if (checkValues[i] > 0 && pack.excludeGroup != null)
-            {
-                for (int q = 0; q < packs.size(); q++)
-                {
-                    if (q != i)
-                    {
-                        Pack otherpack = (Pack) packs.get(q);
-                        if (pack.excludeGroup.equals(otherpack.excludeGroup))
-                        {
-                            if (checkValues[q] == 1)
-                            {
-                                checkValues[q] = 0;
-                            }
-                        }
-                    }
-                }
-            }
+            updateExcludes(i);
         }
         // The required ones must propagate their required status to all the
         // ones
         // that they depend on
-        for (Object pack1 : packs)
+        boolean[] visited = new boolean[packs.size()];
+        for (int i = 0; i < packs.size(); i++)
         {
-            Pack pack = (Pack) pack1;
+            Pack pack = (Pack) packs.get(i);
 
             if (pack.required)
             {
-                propRequirement(pack.name);
+                propRequirement(i, visited);
             }
         }
 
         refreshPacksToInstall();
     }
 
-    private void propRequirement(String name)
-    {
-
-        final int pos = getPos(name);
-        checkValues[pos] = -1;
-        List<String> deps = ((Pack) packs.get(pos)).dependencies;
-        for (int i = 0; deps != null && i < deps.size(); i++)
-        {
-            String s = deps.get(i);
-            propRequirement(s);
-        }
-
-    }
-
     /**
-     * Given a map of names and Integer for position and a name it return the position of this name
-     * as an int
+     * Marks a pack and all the packs it depends on as required.
      *
-     * @return position of the name
+     * @param pos     the position of the pack
+     * @param visited the packs already marked, each one is only followed once
      */
-    private int getPos(String name)
+    private void propRequirement(int pos, boolean[] visited)
     {
-        return namesPos.get(name);
+        checkValues[pos] = -1;
+        if (visited[pos])
+        {
+            return;
+        }
+        visited[pos] = true;
+        for (int dep : dependencyPos[pos])
+        {
+            propRequirement(dep, visited);
+        }
     }
 
     /*
@@ -591,11 +640,7 @@ class PacksModel extends AbstractTableModel
     private void updateDeps()
     {
         int[] statusArray = new int[packs.size()];
-        for (int i = 0; i < statusArray.length; i++)
-        {
-            statusArray[i] = 0;
-        }
-        dfs(statusArray);
+        findDisabled(statusArray);
         for (int i = 0; i < statusArray.length; i++)
         {
             if (statusArray[i] == 0 && checkValues[i] < 0)
@@ -611,9 +656,10 @@ class PacksModel extends AbstractTableModel
         // The required ones must propagate their required status to all the
         // ones
         // that they depend on
-        for (Object pack1 : packs)
+        boolean[] visited = new boolean[packs.size()];
+        for (int i = 0; i < packs.size(); i++)
         {
-            Pack pack = (Pack) pack1;
+            Pack pack = (Pack) packs.get(i);
             if (pack.required)
             {
                 String packid = pack.id;
@@ -621,12 +667,12 @@ class PacksModel extends AbstractTableModel
                 {
                     if (!(!this.rules.canInstallPack(packid, this.variables) && this.rules.canInstallPackOptional(packid, this.variables)))
                     {
-                        propRequirement(pack.name);
+                        propRequirement(i, visited);
                     }
                 }
                 else
                 {
-                    propRequirement(pack.name);
+                    propRequirement(i, visited);
                 }
             }
         }
@@ -642,20 +688,11 @@ class PacksModel extends AbstractTableModel
         Pack pack = (Pack) packs.get(rowindex);
         if (value > 0 && pack.excludeGroup != null)
         {
-            for (int q = 0; q < packs.size(); q++)
+            for (int q : excludeGroupsPos.get(pack.excludeGroup))
             {
-                if (rowindex != q)
+                if (rowindex != q && checkValues[q] == 1)
                 {
-                    Pack otherpack = (Pack) packs.get(q);
-                    String name1 = otherpack.excludeGroup;
-                    String name2 = pack.excludeGroup;
-                    if (name2.equals(name1))
-                    {
-                        if (checkValues[q] == 1)
-                        {
-                            checkValues[q] = 0;
-                        }
-                    }
+                    checkValues[q] = 0;
                 }
             }
         }
@@ -683,62 +720,37 @@ class PacksModel extends AbstractTableModel
     }
 
     /**
-     * We use a modified dfs graph search algorithm as described in: Thomas H. Cormen, Charles
-     * Leiserson, Ronald Rivest and Clifford Stein. Introduction to algorithms 2nd Edition
-     * 540-549,MIT Press, 2001
+     * Marks the packs which depend, directly or indirectly, on a pack which is not selected. All
+     * unselected packs are searched from at once, so every dependency edge is followed only once.
+     *
+     * @param status set to 1 for the packs which have to be disabled
      */
-    private int dfs(int[] status)
+    private void findDisabled(int[] status)
     {
+        int[] queue = new int[packs.size()];
+        boolean[] queued = new boolean[packs.size()];
+        int head = 0;
+        int tail = 0;
         for (int i = 0; i < packs.size(); i++)
         {
-            for (Object pack1 : packs)
+            if (Math.abs(checkValues[i]) != 1)
             {
-                ((Pack) pack1).color = Pack.WHITE;
+                queue[tail++] = i;
+                queued[i] = true;
             }
-            Pack pack = (Pack) packs.get(i);
-            boolean wipe = false;
-
-            if (dfsVisit(pack, status, wipe) != 0)
-            {
-                return -1;
-            }
-
         }
-        return 0;
-    }
-
-    private int dfsVisit(Pack u, int[] status, boolean wipe)
-    {
-        u.color = Pack.GREY;
-        int check = checkValues[getPos(u.name)];
-
-        if (Math.abs(check) != 1)
-        {
-            wipe = true;
-        }
-        List<String> deps = u.revDependencies;
-        if (deps != null)
+        while (head < tail)
         {
-            for (String name : deps)
+            for (int v : revDependencyPos[queue[head++]])
             {
-                Pack v = namesObj.get(name);
-                if (wipe)
+                status[v] = 1;
+                if (!queued[v])
                 {
-                    status[getPos(v.name)] = 1;
-                }
-                if (v.color == Pack.WHITE)
-                {
-
-                    final int result = dfsVisit(v, status, wipe);
-                    if (result != 0)
-                    {
-                        return result;
-                    }
+                    queue[tail++] = v;
+                    queued[v] = true;
                 }
             }
         }
-        u.color = Pack.BLACK;
-        return 0;
     }
 
 
@@ -29,7 +29,6 @@ import java.awt.event.FocusListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.io.File;
-import java.io.InputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -64,8 +63,6 @@ import com.izforge.izpack.LocaleDatabase;
 import com.izforge.izpack.Pack;
 import com.izforge.izpack.Panel;
 import com.izforge.izpack.adaptator.IXMLElement;
-import com.izforge.izpack.adaptator.IXMLParser;
-import com.izforge.izpack.adaptator.impl.XMLParser;
 import com.izforge.izpack.gui.ButtonFactory;
 import com.izforge.izpack.gui.LabelFactory;
 import com.izforge.izpack.gui.TwoColumnConstraints;
@@ -73,7 +70,6 @@ import com.izforge.izpack.gui.TwoColumnLayout;
 import com.izforge.izpack.installer.InstallData;
 import com.izforge.izpack.installer.InstallerFrame;
 import com.izforge.izpack.installer.IzPanel;
-import com.izforge.izpack.installer.ResourceManager;
 import com.izforge.izpack.rules.RulesEngine;
 import com.izforge.izpack.rules.VariableExistenceCondition;
 import com.izforge.izpack.util.Debug;
@@ -294,18 +290,18 @@ public class UserInputPanel extends IzPanel implements ActionListener, ItemListe
     /**
      * The name of the XML file that specifies the panel layout
      */
-    private static final String SPEC_FILE_NAME = "userInputSpec.xml";
+    static final String SPEC_FILE_NAME = "userInputSpec.xml";
 
-    private static final String LANG_FILE_NAME = "userInputLang.xml";
+    static final String LANG_FILE_NAME = "userInputLang.xml";
 
     /**
      * how the spec node for a specific panel is identified
      */
-    private static final String NODE_ID = "panel";
+    static final String NODE_ID = "panel";
 
     private static final String FIELD_NODE_ID = "field";
 
-    private static final String INSTANCE_IDENTIFIER = "order";
+    static final String INSTANCE_IDENTIFIER = "order";
 
     protected static final String PANEL_IDENTIFIER = "id";
 
@@ -567,14 +563,12 @@ public class UserInputPanel extends IzPanel implements ActionListener, ItemListe
         // ----------------------------------------------------
         try
         {
-            this.langpack = (LocaleDatabase) parent.langpack.clone();
-
-            String resource = LANG_FILE_NAME + "_" + idata.localeISO3;
-            this.langpack.add(ResourceManager.getInstance().getInputStream(resource));
+            this.langpack = UserInputSpec.getLangpack(parent.langpack, idata.localeISO3);
         }
         catch (Throwable exception)
         {
             exception.printStackTrace();
+            this.langpack = parent.langpack;
         }
 
         // ----------------------------------------------------
@@ -1434,11 +1428,6 @@ public class UserInputPanel extends IzPanel implements ActionListener, ItemListe
     /*--------------------------------------------------------------------------*/
     private void readSpec() throws Exception
     {
-        InputStream input = null;
-        IXMLElement data;
-        Vector<IXMLElement> specElements;
-        String attribute;
-        String panelattribute;
         String instance = Integer.toString(instanceNumber);
 
         String panelid = null;
@@ -1447,55 +1436,21 @@ public class UserInputPanel extends IzPanel implements ActionListener, ItemListe
         {
             panelid = p.getPanelid();
         }
-        try
-        {
-            input = parentFrame.getResource(SPEC_FILE_NAME);
-        }
-        catch (Exception exception)
-        {
-            haveSpec = false;
-            return;
-        }
-        if (input == null)
+        haveSpec = false;
+        // the specification is parsed only once for all panels
+        UserInputSpec specs = UserInputSpec.getInstance(parentFrame);
+        if (specs == null)
         {
-            haveSpec = false;
             return;
         }
 
-        // initialize the parser
-        IXMLParser parser = new XMLParser();
-
-        // get the data
-        data = parser.parse(input);
-
         // extract the spec to this specific panel instance
-        if (data.hasChildren())
+        IXMLElement data = specs.getPanelSpec(instance, panelid);
+        if (data != null)
         {
-            specElements = data.getChildrenNamed(NODE_ID);
-            for (int i = 0; i < specElements.size(); i++)
-            {
-                data = specElements.elementAt(i);
-                attribute = data.getAttribute(INSTANCE_IDENTIFIER);
-                panelattribute = data.getAttribute(PANEL_IDENTIFIER);
-
-                if (((attribute != null) && instance.equals(attribute))
-                        || ((panelattribute != null) && (panelid != null) && (panelid
-                                .equals(panelattribute))))
-                {
-                    // use the current element as spec
-                    spec = data;
-                    // close the stream
-                    input.close();
-                    haveSpec = true;
-                    return;
-                }
-            }
-
-            haveSpec = false;
-            return;
+            spec = data;
+            haveSpec = true;
         }
-
-        haveSpec = false;
     }
 
     /*--------------------------------------------------------------------------*/
@@ -0,0 +1,160 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.panels;
+
+import com.izforge.izpack.LocaleDatabase;
+import com.izforge.izpack.adaptator.IXMLElement;
+import com.izforge.izpack.adaptator.impl.XMLParser;
+import com.izforge.izpack.installer.InstallerFrame;
+import com.izforge.izpack.installer.ResourceManager;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * The parsed user input specification, shared by all the user input panels of an installer.
+ * <p/>
+ * The specification is read once and the panel elements are indexed by their order and their
+ * panel id. The user input langpack of a locale is also only read once and layered on the langpack
+ * of the installer instead of copying it. The panels must not modify the elements or the langpack
+ * they get.
+ */
+class UserInputSpec
+{
+    private static final Map<String, LocaleDatabase> langpacks = new HashMap<String, LocaleDatabase>();
+
+    private static UserInputSpec instance;
+
+    private static boolean read = false;
+
+    private final Vector<IXMLElement> panels;
+
+    /**
+     * The positions of the panel elements by their order attribute.
+     */
+    private final Map<String, Integer> orders = new HashMap<String, Integer>();
+
+    /**
+     * The positions of the panel elements by their panel id.
+     */
+    private final Map<String, Integer> panelIds = new HashMap<String, Integer>();
+
+    private UserInputSpec(IXMLElement data)
+    {
+        panels = data.getChildrenNamed(UserInputPanel.NODE_ID);
+        for (int i = panels.size() - 1; i >= 0; i--)
+        {
+            IXMLElement panel = panels.elementAt(i);
+            String order = panel.getAttribute(UserInputPanel.INSTANCE_IDENTIFIER);
+            if (order != null)
+            {
+                orders.put(order, i);
+            }
+            String panelId = panel.getAttribute(UserInputPanel.PANEL_IDENTIFIER);
+            if (panelId != null)
+            {
+                panelIds.put(panelId, i);
+            }
+        }
+    }
+
+    /**
+     * Returns the specification, reading it on the first call.
+     *
+     * @param frame the installer frame to read the specification resource from
+     * @return the specification or null, if the installer has none
+     * @throws Exception if the specification can't be parsed
+     */
+    static synchronized UserInputSpec getInstance(InstallerFrame frame) throws Exception
+    {
+        if (!read)
+        {
+            InputStream input;
+            try
+            {
+                input = frame.getResource(UserInputPanel.SPEC_FILE_NAME);
+            }
+            catch (Exception exception)
+            {
+                input = null;
+            }
+            if (input != null)
+            {
+                try
+                {
+                    instance = new UserInputSpec(new XMLParser().parse(input));
+                }
+                finally
+                {
+                    input.close();
+                }
+            }
+            read = true;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the specification of a panel. If several panel elements match, the first one is
+     * used.
+     *
+     * @param order   the instance number of the panel
+     * @param panelId the id of the panel, may be null
+     * @return the panel element or null, if there is none for the panel
+     */
+    IXMLElement getPanelSpec(String order, String panelId)
+    {
+        Integer byOrder = orders.get(order);
+        Integer byId = panelId != null ? panelIds.get(panelId) : null;
+        if (byOrder == null && byId == null)
+        {
+            return null;
+        }
+        if (byOrder == null || (byId != null && byId < byOrder))
+        {
+            return panels.elementAt(byId);
+        }
+        return panels.elementAt(byOrder);
+    }
+
+    /**
+     * Returns the langpack of the user input panels for a locale, reading it on the first call.
+     *
+     * @param parent    the langpack of the installer
+     * @param localeISO3 the locale
+     * @return the user input langpack layered on the langpack of the installer
+     * @throws Exception if the langpack can't be read
+     */
+    static synchronized LocaleDatabase getLangpack(LocaleDatabase parent, String localeISO3)
+            throws Exception
+    {
+        LocaleDatabase langpack = langpacks.get(localeISO3);
+        if (langpack == null || langpack.getParent() != parent)
+        {
+            String resource = UserInputPanel.LANG_FILE_NAME + "_" + localeISO3;
+            langpack = new LocaleDatabase(parent, ResourceManager.getInstance().getInputStream(
+                    resource));
+            langpacks.put(localeISO3, langpack);
+        }
+        return langpack;
+    }
+}
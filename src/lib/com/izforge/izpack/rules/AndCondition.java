@@ -24,6 +24,8 @@ package com.izforge.izpack.rules;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.adaptator.IXMLElement;
 
+import java.util.Set;
+
 /**
  * Defines a condition where both operands have to be true
  *
@@ -102,4 +104,9 @@ public class AndCondition extends Condition
         details.append("</li></ul>");
         return details.toString();
     }
+
+    public Set<String> getVariableDependencies()
+    {
+        return getVariableDependencies(leftoperand, rightoperand);
+    }
 }
@@ -21,6 +21,8 @@
 package com.izforge.izpack.rules;
 
 import java.util.HashMap;
+import java.util.Collections;
+import java.util.Set;
 
 import com.izforge.izpack.adaptator.IXMLElement;
 
@@ -164,4 +166,9 @@ public class CompareNumericsCondition extends Condition
     {
         this.operator = operator;
     }
-}
\ No newline at end of file
+
+    public Set<String> getVariableDependencies()
+    {
+        return Collections.singleton(variablename);
+    }
+}
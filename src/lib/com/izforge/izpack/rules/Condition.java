@@ -25,6 +25,8 @@ import com.izforge.izpack.installer.AutomatedInstallData;
 import com.izforge.izpack.adaptator.IXMLElement;
 
 import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Abstract base class for all conditions
@@ -79,4 +81,38 @@ public abstract class Condition implements Serializable
     {
         return "No dependencies for this condition.";
     }
+
+    /**
+     * Returns the names of the variables the result of this condition depends on. The rules
+     * engine reuses the last result of the condition as long as these variables keep their values.
+     *
+     * @return the names of the variables or null if the result depends on anything else than
+     *         variables
+     */
+    public Set<String> getVariableDependencies()
+    {
+        return null;
+    }
+
+    /**
+     * Returns the names of the variables the results of the given conditions depend on.
+     *
+     * @param operands the conditions
+     * @return the names of the variables or null if one of the results depends on anything else
+     *         than variables
+     */
+    protected static Set<String> getVariableDependencies(Condition... operands)
+    {
+        Set<String> result = new HashSet<String>();
+        for (Condition operand : operands)
+        {
+            Set<String> dependencies = (operand == null) ? null : operand.getVariableDependencies();
+            if (dependencies == null)
+            {
+                return null;
+            }
+            result.addAll(dependencies);
+        }
+        return result;
+    }
 }
@@ -23,6 +23,8 @@ package com.izforge.izpack.rules;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.adaptator.IXMLElement;
 
+import java.util.Set;
+
 /**
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  */
@@ -110,4 +112,9 @@ public class NotCondition extends Condition
         details.append("</li></ul>");
         return details.toString();
     }
+
+    public Set<String> getVariableDependencies()
+    {
+        return getVariableDependencies(operand);
+    }
 }
@@ -23,6 +23,8 @@ package com.izforge.izpack.rules;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.adaptator.IXMLElement;
 
+import java.util.Set;
+
 /**
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  * @version $Id: OrCondition.java,v 1.1 2006/09/29 14:40:38 dennis Exp $
@@ -113,4 +115,9 @@ public class OrCondition extends Condition
         details.append("</li></ul>");
         return details.toString();
     }
+
+    public Set<String> getVariableDependencies()
+    {
+        return getVariableDependencies(leftoperand, rightoperand);
+    }
 }
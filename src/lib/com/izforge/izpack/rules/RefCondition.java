@@ -22,6 +22,8 @@ package com.izforge.izpack.rules;
 
 import com.izforge.izpack.adaptator.IXMLElement;
 
+import java.util.Set;
+
 /**
  * References an already defined condition
  *
@@ -82,4 +84,13 @@ public class RefCondition extends Condition
         details.append("</li></ul>");
         return details.toString();
     }
+
+    public Set<String> getVariableDependencies()
+    {
+        if (this.referencedcondition == null)
+        {
+            return null;
+        }
+        return this.referencedcondition.getVariableDependencies();
+    }
 }
@@ -26,6 +26,7 @@ import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.adaptator.IXMLElement;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The rules engine class is the central point for checking conditions
@@ -45,6 +46,23 @@ public class RulesEngine
 
     protected static Map<String, Condition> conditionsmap = new HashMap<String, Condition>();
 
+    /**
+     * The condition trees of the expressions parsed so far, by expression. Has to be cleared
+     * whenever the known conditions change.
+     */
+    private static final Map<String, Condition> compiledexpressions = new Hashtable<String, Condition>();
+
+    /**
+     * The last results of the conditions depending on variables only, by condition. Has to be
+     * cleared whenever the known conditions change.
+     */
+    private static final Map<Condition, CachedResult> cachedresults = new ConcurrentHashMap<Condition, CachedResult>();
+
+    /**
+     * Marks the conditions which do not depend on variables only in {@link #cachedresults}.
+     */
+    private static final CachedResult UNCACHEABLE = new CachedResult(null, null, false);
+
     protected static AutomatedInstallData installdata;
 
     static
@@ -70,6 +88,7 @@ public class RulesEngine
     private RulesEngine()
     {
         conditionsmap = new Hashtable<String, Condition>();
+        conditionsChanged();
         this.panelconditions = new Hashtable<String, String>();
         this.packconditions = new Hashtable<String, String>();
         this.optionalpackconditions = new Hashtable<String, String>();
@@ -97,6 +116,7 @@ public class RulesEngine
                     packselcond.id = "izpack.selected." + pack.id;
                     packselcond.packid = pack.id;
                     conditionsmap.put(packselcond.id, packselcond);
+                    conditionsChanged();
                     
                     Debug.trace("Pack.getCondition(): " + pack.getCondition() + " for pack " + pack.id);
                     if ((pack.getCondition() != null) && pack.getCondition().length() > 0){
@@ -109,6 +129,15 @@ public class RulesEngine
         }
     }
 
+    /**
+     * Forgets everything derived from the known conditions.
+     */
+    private static void conditionsChanged()
+    {
+        compiledexpressions.clear();
+        cachedresults.clear();
+    }
+
     private static void createBuiltinOsCondition(String osVersionField, String conditionId)
     {
         JavaCondition condition = new JavaCondition();
@@ -120,6 +149,7 @@ public class RulesEngine
         condition.returnvaluetype = "boolean";
         condition.complete = true;
         conditionsmap.put(condition.id, condition);
+        conditionsChanged();
     }   
 
     /**
@@ -140,6 +170,7 @@ public class RulesEngine
         Debug.trace("Initializing RulesEngine");
         RulesEngine.installdata = installdata;
         conditionsmap = rules;
+        conditionsChanged();
         Iterator<String> keyiter = conditionsmap.keySet().iterator();
         while (keyiter.hasNext())
         {
@@ -259,6 +290,7 @@ public class RulesEngine
                         if ((condid != null) && !("UNKNOWN".equals(condid)))
                         {
                             conditionsmap.put(condid, cond);
+                            conditionsChanged();
                         }
                     }
                 }
@@ -297,74 +329,35 @@ public class RulesEngine
         }
     }
 
+    /**
+     * Returns the condition with the given id or the condition tree of the given expression. An
+     * expression is parsed only once, its condition tree is kept until the known conditions change.
+     *
+     * @param id the id of a condition or an expression
+     * @return the condition or null if the expression refers to an unknown condition
+     */
     public static Condition getCondition(String id)
     {
         Condition result = conditionsmap.get(id);
         if (result == null)
         {
-            result = getConditionByExpr(new StringBuffer(id));
+            result = compiledexpressions.get(id);
+            if (result == null)
+            {
+                result = new ExpressionParser(id).parse();
+                if (result != null)
+                {
+                    compiledexpressions.put(id, result);
+                }
+            }
         }
         return result;
     }
 
     protected static Condition getConditionByExpr(StringBuffer conditionexpr)
     {
-        Condition result = null;
-        int index = 0;
-        while (index < conditionexpr.length())
-        {
-            char currentchar = conditionexpr.charAt(index);
-            switch (currentchar)
-            {
-                case '+':
-                    // and-condition
-                    Condition op1 = conditionsmap.get(conditionexpr.substring(0, index));
-                    conditionexpr.delete(0, index + 1);
-                    result = new AndCondition(op1, getConditionByExpr(conditionexpr));
-                    result.setInstalldata(RulesEngine.installdata);
-                    break;
-                case '|':
-                    // or-condition
-                    op1 = conditionsmap.get(conditionexpr.substring(0, index));
-                    conditionexpr.delete(0, index + 1);
-                    result = new OrCondition(op1, getConditionByExpr(conditionexpr));
-                    result.setInstalldata(RulesEngine.installdata);
-                    break;
-                case '\\':
-                    // xor-condition
-                    op1 = conditionsmap.get(conditionexpr.substring(0, index));
-                    conditionexpr.delete(0, index + 1);
-                    result = new XorCondition(op1, getConditionByExpr(conditionexpr));
-                    result.setInstalldata(RulesEngine.installdata);
-                    break;
-                case '!':
-                    // not-condition
-                    if (index > 0)
-                    {
-                        Debug.trace("error: ! operator only allowed at position 0");
-                    }
-                    else
-                    {
-                        // delete not symbol
-                        conditionexpr.deleteCharAt(index);
-                        result = new NotCondition(getConditionByExpr(conditionexpr));
-                        result.setInstalldata(RulesEngine.installdata);
-                    }
-                    break;
-                default:
-                    // do nothing
-            }
-            index++;
-        }
-        if (conditionexpr.length() > 0)
-        {
-            result = conditionsmap.get(conditionexpr.toString());
-            if (result != null)
-            {
-                result.setInstalldata(RulesEngine.installdata);
-                conditionexpr.delete(0, conditionexpr.length());
-            }
-        }
+        Condition result = new ExpressionParser(conditionexpr.toString()).parse();
+        conditionexpr.delete(0, conditionexpr.length());
         return result;
     }
 
@@ -373,6 +366,11 @@ public class RulesEngine
         Condition cond = getCondition(id);
         if (cond == null)
         {
+            if (ExpressionParser.isExpression(id))
+            {
+                Debug.error("Invalid condition expression: " + id);
+                return false;
+            }
             Debug.trace("Condition (" + id + ") not found.");
             return true;
         }
@@ -381,7 +379,7 @@ public class RulesEngine
             Debug.trace("Checking condition");
             try
             {
-                return cond.isTrue();
+                return evaluate(cond);
             }
             catch (NullPointerException npe)
             {
@@ -401,7 +399,7 @@ public class RulesEngine
         else
         {
             Debug.trace("Checking condition");
-            return cond.isTrue();
+            return evaluate(cond);
         }
     }
 
@@ -420,7 +418,56 @@ public class RulesEngine
 
     public boolean isConditionTrue(Condition cond)
     {
-        return cond.isTrue();
+        return evaluate(cond);
+    }
+
+    /**
+     * Evaluates a condition. The result of a condition depending on variables only is reused as
+     * long as none of the variables it depends on is changed.
+     *
+     * @param cond the condition
+     * @return the result of the condition
+     */
+    protected static boolean evaluate(Condition cond)
+    {
+        if (installdata == null)
+        {
+            return cond.isTrue();
+        }
+        CachedResult cached = cachedresults.get(cond);
+        if (cached == UNCACHEABLE)
+        {
+            return cond.isTrue();
+        }
+        Properties variables = installdata.getVariables();
+        if (cached != null && cached.isCurrent(variables))
+        {
+            return cached.result;
+        }
+        String[] names;
+        if (cached == null)
+        {
+            Set<String> dependencies = cond.getVariableDependencies();
+            if (dependencies == null || dependencies.contains(null))
+            {
+                cachedresults.put(cond, UNCACHEABLE);
+                return cond.isTrue();
+            }
+            names = dependencies.toArray(new String[dependencies.size()]);
+        }
+        else
+        {
+            names = cached.names;
+        }
+        // read before evaluating, so a concurrent change invalidates the result
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            values[i] = variables.get(names[i]);
+        }
+        boolean result = cond.isTrue();
+        cachedresults.put(cond, new CachedResult(names, values, result));
+        return result;
     }
 
     /**
@@ -443,7 +490,7 @@ public class RulesEngine
         Condition condition = getCondition(this.panelconditions.get(panelid));
         if (condition != null)
         {
-            return condition.isTrue();
+            return evaluate(condition);
         }
         return false;
     }
@@ -472,7 +519,7 @@ public class RulesEngine
         Condition condition = getCondition(this.packconditions.get(packid));
         if (condition != null)
         {
-            return condition.isTrue();
+            return evaluate(condition);
         }
         return false;
     }
@@ -510,10 +557,169 @@ public class RulesEngine
             }
             else {
                conditionsmap.put(condition.id, condition);
+               conditionsChanged();
             }
         }
         else {
             Debug.error("Cannot add condition. Condition was null.");
         }
     }
+
+    /**
+     * The result of a condition with the values of the variables it was computed from. The values
+     * are compared by identity: every write stores the value object it is given, so a write
+     * through any method or view of the variable map is noticed.
+     */
+    private static class CachedResult
+    {
+        private final String[] names;
+
+        private final Object[] values;
+
+        private final boolean result;
+
+        CachedResult(String[] names, Object[] values, boolean result)
+        {
+            this.names = names;
+            this.values = values;
+            this.result = result;
+        }
+
+        boolean isCurrent(Properties variables)
+        {
+            for (int i = 0; i < names.length; i++)
+            {
+                if (variables.get(names[i]) != values[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Parser for condition expressions. The operators are, from highest to lowest precedence,
+     * <code>!</code> (not), <code>+</code> (and), <code>\</code> (xor) and <code>|</code> (or);
+     * binary operators are left-associative. The operands are condition ids.
+     */
+    private static class ExpressionParser
+    {
+        private static final String OPERATORS = "+|\\!";
+
+        private final String expression;
+
+        private int position = 0;
+
+        ExpressionParser(String expression)
+        {
+            this.expression = expression;
+        }
+
+        /**
+         * Tells whether the given condition id is an expression, i.e. uses an operator.
+         *
+         * @param id the condition id
+         * @return true if the id contains an operator
+         */
+        static boolean isExpression(String id)
+        {
+            for (int i = 0; i < id.length(); i++)
+            {
+                if (OPERATORS.indexOf(id.charAt(i)) >= 0)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Parses the whole expression.
+         *
+         * @return the condition tree or null if the expression is invalid
+         */
+        Condition parse()
+        {
+            Condition result = parseOr();
+            if (result != null && position < expression.length())
+            {
+                Debug.trace("error: unexpected '" + expression.charAt(position) + "' in condition "
+                        + expression);
+                result = null;
+            }
+            return result;
+        }
+
+        private Condition parseOr()
+        {
+            Condition result = parseXor();
+            while (result != null && accept('|'))
+            {
+                Condition operand = parseXor();
+                result = (operand == null) ? null : init(new OrCondition(result, operand));
+            }
+            return result;
+        }
+
+        private Condition parseXor()
+        {
+            Condition result = parseAnd();
+            while (result != null && accept('\\'))
+            {
+                Condition operand = parseAnd();
+                result = (operand == null) ? null : init(new XorCondition(result, operand));
+            }
+            return result;
+        }
+
+        private Condition parseAnd()
+        {
+            Condition result = parseNot();
+            while (result != null && accept('+'))
+            {
+                Condition operand = parseNot();
+                result = (operand == null) ? null : init(new AndCondition(result, operand));
+            }
+            return result;
+        }
+
+        private Condition parseNot()
+        {
+            if (accept('!'))
+            {
+                Condition operand = parseNot();
+                return (operand == null) ? null : init(new NotCondition(operand));
+            }
+            int start = position;
+            while (position < expression.length() && OPERATORS.indexOf(expression.charAt(position)) < 0)
+            {
+                position++;
+            }
+            String operandid = expression.substring(start, position);
+            Condition result = conditionsmap.get(operandid);
+            if (result == null)
+            {
+                Debug.trace("error: unknown condition " + operandid + " in condition " + expression);
+                return null;
+            }
+            return init(result);
+        }
+
+        private boolean accept(char operator)
+        {
+            if (position < expression.length() && expression.charAt(position) == operator)
+            {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private static Condition init(Condition condition)
+        {
+            condition.setInstalldata(RulesEngine.installdata);
+            return condition;
+        }
+    }
 }
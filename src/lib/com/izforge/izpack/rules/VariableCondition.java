@@ -24,6 +24,8 @@ import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.adaptator.IXMLElement;
 
 import java.util.HashMap;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
@@ -135,4 +137,9 @@ public class VariableCondition extends Condition
         details.append("</b><br/>");
         return details.toString();
     }
-}
\ No newline at end of file
+
+    public Set<String> getVariableDependencies()
+    {
+        return Collections.singleton(variablename);
+    }
+}
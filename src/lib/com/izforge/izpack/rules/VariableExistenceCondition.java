@@ -23,6 +23,9 @@ package com.izforge.izpack.rules;
 import com.izforge.izpack.adaptator.IXMLElement;
 import com.izforge.izpack.util.Debug;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
  * This condition checks if a certain variable has a value. If it is not
  * in the current list of variables it will evaluate to false.
@@ -79,4 +82,8 @@ public class VariableExistenceCondition extends Condition
         this.variable = variable;
     }
 
+    public Set<String> getVariableDependencies()
+    {
+        return Collections.singleton(variable);
+    }
 }
@@ -25,12 +25,20 @@ import com.izforge.izpack.installer.UninstallData;
 import com.izforge.izpack.util.AbstractUIProgressHandler;
 import com.izforge.izpack.util.Debug;
 import com.izforge.izpack.util.FileExecutor;
+import com.izforge.izpack.util.InstallManifest;
 import com.izforge.izpack.util.OsVersion;
 import com.izforge.izpack.util.os.unix.ShellScript;
 import com.sun.pkg.client.Image;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -41,6 +49,11 @@ import java.util.*;
 public class Destroyer extends Thread
 {
 
+    /**
+     * The default number of threads deleting the files.
+     */
+    public static final int DEFAULT_THREADS = 4;
+
     /**
      * True if the destroyer must force the recursive deletion.
      */
@@ -56,6 +69,11 @@ public class Destroyer extends Thread
      */
     private AbstractUIProgressHandler handler;
 
+    /**
+     * The number of threads deleting the files.
+     */
+    private int threads = DEFAULT_THREADS;
+
     /**
      * The constructor.
      *
@@ -72,6 +90,18 @@ public class Destroyer extends Thread
         this.handler = handler;
     }
 
+    /**
+     * Sets the number of threads deleting the files. The files are deleted one after the other
+     * on the destroyer thread if this is 1 or if uninstaller listeners are informed about every
+     * single file.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
     /**
      * The run method.
      */
@@ -97,18 +127,13 @@ public class Destroyer extends Thread
             handler.startAction("destroy", size);
 
             // We destroy the files
-            for (int i = 0; i < size; i++)
+            if (threads > 1 && listeners[1].isEmpty())
             {
-                File file = files.get(i);
-                // Custem action listener stuff --- beforeDelete ----
-                informListeners(listeners[1], UninstallerListener.BEFORE_DELETE, file, handler);
-
-                file.delete();
-
-                // Custem action listener stuff --- afterDelete ----
-                informListeners(listeners[1], UninstallerListener.AFTER_DELETE, file, handler);
-
-                handler.progress(i, file.getAbsolutePath());
+                deleteFilesConcurrently(files);
+            }
+            else
+            {
+                deleteFiles(files, listeners[1]);
             }
 
             // Custom action listener stuff --- afterDeletion ----
@@ -177,6 +202,144 @@ public class Destroyer extends Thread
         }
     }
 
+    /**
+     * Deletes the files one after the other, informing the file listeners about each of them.
+     *
+     * @param files     the files to delete, in reverse order
+     * @param listeners the file listeners
+     */
+    private void deleteFiles(ArrayList<File> files, List listeners)
+    {
+        long start = System.currentTimeMillis();
+        int size = files.size();
+        for (int i = 0; i < size; i++)
+        {
+            File file = files.get(i);
+            // Custem action listener stuff --- beforeDelete ----
+            informListeners(listeners, UninstallerListener.BEFORE_DELETE, file, handler);
+
+            file.delete();
+
+            // Custem action listener stuff --- afterDelete ----
+            informListeners(listeners, UninstallerListener.AFTER_DELETE, file, handler);
+
+            handler.progress(i, file.getAbsolutePath());
+        }
+        Debug.log("Deleted " + size + " files (" + getThroughput(size, start) + " files/s)");
+    }
+
+    /**
+     * Deletes the files with a pool of threads. The files are grouped by their directory and each
+     * group is deleted by one thread. Directories which still have content at that time are
+     * deleted afterwards, bottom-up, when their content is gone.
+     *
+     * @param files the files to delete, in reverse order
+     * @throws Exception if a deleting thread failed
+     */
+    private void deleteFilesConcurrently(ArrayList<File> files) throws Exception
+    {
+        long start = System.currentTimeMillis();
+        Map<File, List<File>> groups = new LinkedHashMap<File, List<File>>();
+        for (File file : files)
+        {
+            File directory = file.getParentFile();
+            List<File> group = groups.get(directory);
+            if (group == null)
+            {
+                group = new ArrayList<File>();
+                groups.put(directory, group);
+            }
+            group.add(file);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        TreeSet<File> remaining = new TreeSet<File>(Collections.reverseOrder());
+        try
+        {
+            CompletionService<List<File>> completion = new ExecutorCompletionService<List<File>>(
+                    executor);
+            Map<Future<List<File>>, File> directories = new HashMap<Future<List<File>>, File>();
+            for (Map.Entry<File, List<File>> group : groups.entrySet())
+            {
+                directories.put(completion.submit(new GroupDeletion(group.getValue())),
+                        group.getKey());
+            }
+
+            // report the progress while the groups are deleted
+            int deleted = 0;
+            for (int i = 0; i < groups.size(); i++)
+            {
+                Future<List<File>> future = completion.take();
+                remaining.addAll(get(future));
+                File directory = directories.get(future);
+                deleted += groups.get(directory).size();
+                handler.progress(deleted - 1, directory + " (" + getThroughput(deleted, start)
+                        + " files/s)");
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        // the directories, children before their parents
+        for (File file : remaining)
+        {
+            file.delete();
+        }
+        Debug.log("Deleted " + files.size() + " files with " + threads + " threads ("
+                + getThroughput(files.size(), start) + " files/s)");
+    }
+
+    private static List<File> get(Future<List<File>> future) throws Exception
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+            {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static long getThroughput(int files, long start)
+    {
+        long millis = Math.max(1, System.currentTimeMillis() - start);
+        return files * 1000L / millis;
+    }
+
+    /**
+     * Deletes the files of a directory and returns the ones which could not be deleted.
+     */
+    private static class GroupDeletion implements Callable<List<File>>
+    {
+        private final List<File> files;
+
+        GroupDeletion(List<File> files)
+        {
+            this.files = files;
+        }
+
+        public List<File> call()
+        {
+            List<File> remaining = new ArrayList<File>();
+            for (File file : files)
+            {
+                if (!file.delete() && file.exists())
+                {
+                    remaining.add(file);
+                }
+            }
+            return remaining;
+        }
+    }
+
     /**
      * Asks the JVM for the uninstaller deletion.
      *
@@ -207,6 +370,24 @@ public class Destroyer extends Thread
     {
         // Initializations
         TreeSet<File> files = new TreeSet<File>(Collections.reverseOrder());
+        InputStream manifest = Destroyer.class.getResourceAsStream("/" + InstallManifest.RESOURCE);
+        if (manifest != null)
+        {
+            // uninstallers written by newer installers have the binary manifest
+            try
+            {
+                InstallManifest.Reader reader = new InstallManifest.Reader(manifest);
+                while (reader.next())
+                {
+                    files.add(new File(reader.getPath()));
+                }
+            }
+            finally
+            {
+                manifest.close();
+            }
+            return new ArrayList<File>(files);
+        }
         InputStream in = Destroyer.class.getResourceAsStream("/install.log");
         InputStreamReader inReader = new InputStreamReader(in);
         BufferedReader reader = new BufferedReader(inReader);
@@ -278,13 +278,16 @@ public class FileExecutor
             {
                 // fix executable permission for unix systems
                 Debug.trace("making file executable (setting executable flag)");
-                String[] params = {"/bin/chmod", permissions, file.toString()};
-                exitStatus = executeCommand(params, output);
-                if (exitStatus != 0)
+                if (!FilePermissions.setExecutable(file))
                 {
-                    handler.emitWarning("file execution error", "Error executing \n" + params[0]
-                            + " " + params[1] + " " + params[2]);
-                    continue;
+                    String[] params = {"/bin/chmod", permissions, file.toString()};
+                    exitStatus = executeCommand(params, output);
+                    if (exitStatus != 0)
+                    {
+                        handler.emitWarning("file execution error", "Error executing \n" + params[0]
+                                + " " + params[1] + " " + params[2]);
+                        continue;
+                    }
                 }
             }
 
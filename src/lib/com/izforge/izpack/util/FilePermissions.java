@@ -0,0 +1,179 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.File;
+
+/**
+ * Sets the POSIX permissions of files in-process, without starting a <code>chmod</code> for
+ * every file.
+ * <p/>
+ * The permissions are set through the <code>java.io.File</code> methods of Java 6, which can give
+ * each of the read, write and execute permissions either to the owner only or to everybody. So a
+ * mode can only be set if the group and the others have the same permissions and the owner has at
+ * least these. All methods return false if a permission can't be set this way, e.g. for
+ * <code>0750</code>, before Java 6 or on other systems than Unix, and the caller has to fall back to
+ * <code>chmod</code>.
+ */
+public class FilePermissions
+{
+
+    private static final int READ = 4;
+
+    private static final int WRITE = 2;
+
+    private static final int EXECUTE = 1;
+
+    private static final int ALL = READ | WRITE | EXECUTE;
+
+    /**
+     * Makes a file executable by everybody, like <code>chmod a+x</code>.
+     *
+     * @param file the file
+     * @return true if the permission was set
+     */
+    public static boolean setExecutable(File file)
+    {
+        return change(file, '+', EXECUTE, false);
+    }
+
+    /**
+     * Sets the permissions of a file to a mode.
+     *
+     * @param file the file
+     * @param mode the permission bits, e.g. <code>0644</code>
+     * @return true if the permissions were set
+     */
+    public static boolean setMode(File file, int mode)
+    {
+        if (!OsVersion.IS_UNIX || (mode & ~0777) != 0)
+        {
+            return false;
+        }
+        int owner = (mode >> 6) & ALL;
+        int group = (mode >> 3) & ALL;
+        int others = mode & ALL;
+        if (group != others || (owner & others) != others)
+        {
+            return false;
+        }
+        try
+        {
+            return set(file, READ, owner, others) && set(file, WRITE, owner, others)
+                    && set(file, EXECUTE, owner, others);
+        }
+        catch (LinkageError e)
+        {
+            // no permission methods before Java 6
+            return false;
+        }
+    }
+
+    /**
+     * Changes the permissions of a file like <code>chmod</code>. Octal modes and symbolic modes
+     * like <code>a+x</code>, <code>u-w</code> or <code>+r</code> are supported, several of them
+     * separated by commas.
+     *
+     * @param file        the file
+     * @param permissions the mode
+     * @return true if the permissions were changed
+     */
+    public static boolean chmod(File file, String permissions)
+    {
+        if (permissions.length() > 0 && Character.isDigit(permissions.charAt(0)))
+        {
+            try
+            {
+                return setMode(file, Integer.parseInt(permissions, 8));
+            }
+            catch (NumberFormatException e)
+            {
+                return false;
+            }
+        }
+        // check all clauses before anything is changed
+        String[] clauses = permissions.split(",");
+        for (String clause : clauses)
+        {
+            if (!clause.matches("(a|ugo|u)?[+-][rwx]+"))
+            {
+                return false;
+            }
+        }
+        for (String clause : clauses)
+        {
+            boolean ownerOnly = clause.startsWith("u");
+            int index = clause.indexOf('+') >= 0 ? clause.indexOf('+') : clause.indexOf('-');
+            int bits = 0;
+            for (char c : clause.substring(index + 1).toCharArray())
+            {
+                bits |= c == 'r' ? READ : c == 'w' ? WRITE : EXECUTE;
+            }
+            if (!change(file, clause.charAt(index), bits, ownerOnly))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean change(File file, char operator, int bits, boolean ownerOnly)
+    {
+        if (!OsVersion.IS_UNIX)
+        {
+            return false;
+        }
+        boolean enable = operator == '+';
+        try
+        {
+            boolean result = true;
+            if ((bits & READ) != 0)
+            {
+                result &= file.setReadable(enable, ownerOnly);
+            }
+            if ((bits & WRITE) != 0)
+            {
+                result &= file.setWritable(enable, ownerOnly);
+            }
+            if ((bits & EXECUTE) != 0)
+            {
+                result &= file.setExecutable(enable, ownerOnly);
+            }
+            return result;
+        }
+        catch (LinkageError e)
+        {
+            // no permission methods before Java 6
+            return false;
+        }
+    }
+
+    private static boolean set(File file, int permission, int owner, int others)
+    {
+        // giving a permission to everybody or taking it from everybody ...
+        boolean all = (others & permission) != 0;
+        if (!change(file, all ? '+' : '-', permission, false))
+        {
+            return false;
+        }
+        // ... and then giving it to the owner alone
+        return all || (owner & permission) == 0 || change(file, '+', permission, true);
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The binary manifest of an installation, written to the uninstaller next to the plain
+ * <code>install.log</code>. For every installed file it holds the size and the modification time at
+ * the end of the installation, the SHA-1 digest of the content computed while the file was
+ * unpacked, as well as the pack the file belongs to. This allows to find the files of single packs
+ * and to check whether files were modified since they were installed.
+ * <p/>
+ * The paths are stored in ascending order and each one only with the characters it doesn't share
+ * with the previous one, which keeps the manifest small for deep directory trees. A manifest can
+ * either be read completely for lookups with {@link #read(InputStream)} or entry by entry with a
+ * {@link Reader}, which only keeps the current entry in memory.
+ */
+public class InstallManifest
+{
+
+    /**
+     * The name of the manifest resource in the uninstaller.
+     */
+    public static final String RESOURCE = "install.manifest";
+
+    private static final int MAGIC = 0x495a4d46;
+
+    private static final int VERSION = 2;
+
+    private static final int EXISTS = 1;
+
+    private static final int DIRECTORY = 2;
+
+    private static final int DIGEST = 4;
+
+    private static final int DIGEST_LENGTH = 20;
+
+    private final String installPath;
+
+    private final String[] packs;
+
+    private final String[] paths;
+
+    private final byte[] flags;
+
+    private final long[] sizes;
+
+    private final long[] lastModified;
+
+    private final byte[][] digests;
+
+    private final int[] packIndexes;
+
+    private InstallManifest(String installPath, String[] packs, int count)
+    {
+        this.installPath = installPath;
+        this.packs = packs;
+        paths = new String[count];
+        flags = new byte[count];
+        sizes = new long[count];
+        lastModified = new long[count];
+        digests = new byte[count][];
+        packIndexes = new int[count];
+    }
+
+    /**
+     * Writes the manifest of the given files with their current size and modification time. The
+     * content of the files is not read again.
+     *
+     * @param out         the stream to write to, it is flushed but not closed
+     * @param installPath the installation path
+     * @param files       the paths of the installed files
+     * @param filePacks   the names of the packs of the files by their paths, files without a pack
+     *                    may be missing
+     * @param fileDigests the SHA-1 digests of the content of the files as hexadecimal strings by
+     *                    their paths, files which were not unpacked may be missing
+     * @throws IOException if the manifest can't be written
+     */
+    public static void write(OutputStream out, String installPath, Collection<String> files,
+                             Map<String, String> filePacks, Map<String, String> fileDigests)
+            throws IOException
+    {
+        TreeSet<String> sorted = new TreeSet<String>(files);
+        List<String> packs = new ArrayList<String>();
+        Map<String, Integer> packIndexes = new HashMap<String, Integer>();
+        for (String pack : filePacks.values())
+        {
+            if (!packIndexes.containsKey(pack))
+            {
+                packIndexes.put(pack, packs.size());
+                packs.add(pack);
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeUTF(installPath);
+        writeVarLong(data, packs.size());
+        for (String pack : packs)
+        {
+            data.writeUTF(pack);
+        }
+        writeVarLong(data, sorted.size());
+        String previous = "";
+        for (String path : sorted)
+        {
+            int shared = 0;
+            int max = Math.min(previous.length(), path.length());
+            while (shared < max && previous.charAt(shared) == path.charAt(shared))
+            {
+                shared++;
+            }
+            writeVarLong(data, shared);
+            data.writeUTF(path.substring(shared));
+            previous = path;
+
+            File file = new File(path);
+            if (file.isDirectory())
+            {
+                data.writeByte(EXISTS | DIRECTORY);
+                writeVarLong(data, file.lastModified());
+            }
+            else if (file.isFile())
+            {
+                byte[] digest = parseDigest(fileDigests.get(path));
+                data.writeByte(digest != null ? EXISTS | DIGEST : EXISTS);
+                writeVarLong(data, file.length());
+                writeVarLong(data, file.lastModified());
+                if (digest != null)
+                {
+                    data.write(digest);
+                }
+            }
+            else
+            {
+                data.writeByte(0);
+            }
+            String pack = filePacks.get(path);
+            writeVarLong(data, pack != null ? packIndexes.get(pack) + 1 : 0);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a complete manifest.
+     *
+     * @param in the stream to read from, it is not closed
+     * @return the manifest
+     * @throws IOException if the manifest can't be read
+     */
+    public static InstallManifest read(InputStream in) throws IOException
+    {
+        Reader reader = new Reader(in);
+        InstallManifest manifest = new InstallManifest(reader.installPath, reader.packs,
+                reader.count);
+        for (int i = 0; reader.next(); i++)
+        {
+            manifest.paths[i] = reader.path;
+            manifest.flags[i] = (byte) reader.flags;
+            manifest.sizes[i] = reader.size;
+            manifest.lastModified[i] = reader.lastModified;
+            manifest.digests[i] = reader.digest;
+            manifest.packIndexes[i] = reader.packIndex;
+        }
+        return manifest;
+    }
+
+    /**
+     * Returns the installation path.
+     *
+     * @return the installation path
+     */
+    public String getInstallPath()
+    {
+        return installPath;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size()
+    {
+        return paths.length;
+    }
+
+    /**
+     * Returns the path of an entry. The entries are in ascending order of their paths.
+     *
+     * @param entry the index of the entry
+     * @return the path
+     */
+    public String getPath(int entry)
+    {
+        return paths[entry];
+    }
+
+    /**
+     * Returns the entry of a path.
+     *
+     * @param path the path
+     * @return the index of the entry or -1, if the path is not in the manifest
+     */
+    public int indexOf(String path)
+    {
+        int index = Arrays.binarySearch(paths, path);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Returns whether the file of an entry existed when the manifest was written.
+     */
+    public boolean exists(int entry)
+    {
+        return (flags[entry] & EXISTS) != 0;
+    }
+
+    public boolean isDirectory(int entry)
+    {
+        return (flags[entry] & DIRECTORY) != 0;
+    }
+
+    public long getSize(int entry)
+    {
+        return sizes[entry];
+    }
+
+    public long getLastModified(int entry)
+    {
+        return lastModified[entry];
+    }
+
+    /**
+     * Returns the SHA-1 digest of the content of an entry.
+     *
+     * @param entry the index of the entry
+     * @return the digest as hexadecimal string or null, if the file was not unpacked
+     */
+    public String getDigest(int entry)
+    {
+        return digests[entry] != null ? IoHelper.toHexString(digests[entry]) : null;
+    }
+
+    /**
+     * Returns the pack of an entry.
+     *
+     * @param entry the index of the entry
+     * @return the name of the pack or null, if the file doesn't belong to a pack
+     */
+    public String getPack(int entry)
+    {
+        int index = packIndexes[entry];
+        return index > 0 ? packs[index - 1] : null;
+    }
+
+    /**
+     * Returns the paths of the files of a pack.
+     *
+     * @param pack the name of the pack
+     * @return the paths in ascending order
+     */
+    public List<String> getPaths(String pack)
+    {
+        List<String> result = new ArrayList<String>();
+        for (int i = 0; i < paths.length; i++)
+        {
+            if (pack.equals(getPack(i)))
+            {
+                result.add(paths[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether the file of an entry was modified since the manifest was written. The content
+     * is only read if the size of the file didn't change but its modification time did. A file
+     * without a digest counts as modified in that case.
+     *
+     * @param entry the index of the entry
+     * @return true if the file was modified, created or removed
+     * @throws IOException if the file can't be read
+     */
+    public boolean isModified(int entry) throws IOException
+    {
+        File file = new File(paths[entry]);
+        if (!exists(entry) || isDirectory(entry))
+        {
+            return exists(entry) != file.exists() || isDirectory(entry) != file.isDirectory();
+        }
+        if (!file.isFile() || file.length() != sizes[entry])
+        {
+            return true;
+        }
+        if (file.lastModified() == lastModified[entry])
+        {
+            return false;
+        }
+        return digests[entry] == null || !digest(file).equals(getDigest(entry));
+    }
+
+    /**
+     * Computes the SHA-1 digest of the content of a file.
+     *
+     * @param file the file
+     * @return the digest as hexadecimal string
+     * @throws IOException if the file can't be read
+     */
+    public static String digest(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            return IoHelper.digest(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Converts a digest given as hexadecimal string.
+     *
+     * @return the digest or null, if no valid SHA-1 digest is given
+     */
+    private static byte[] parseDigest(String digest)
+    {
+        if (digest == null || digest.length() != 2 * DIGEST_LENGTH)
+        {
+            return null;
+        }
+        byte[] result = new byte[DIGEST_LENGTH];
+        for (int i = 0; i < result.length; i++)
+        {
+            int high = Character.digit(digest.charAt(2 * i), 16);
+            int low = Character.digit(digest.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0)
+            {
+                return null;
+            }
+            result[i] = (byte) ((high << 4) | low);
+        }
+        return result;
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException
+    {
+        while ((value & ~0x7fL) != 0)
+        {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; ; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads a manifest entry by entry.
+     */
+    public static class Reader
+    {
+        private final DataInputStream in;
+
+        private final String installPath;
+
+        private final String[] packs;
+
+        private final int count;
+
+        private int read = 0;
+
+        private String path = "";
+
+        private int flags;
+
+        private long size;
+
+        private long lastModified;
+
+        private byte[] digest;
+
+        private int packIndex;
+
+        /**
+         * Reads the header of a manifest.
+         *
+         * @param in the stream to read from, it is not closed
+         * @throws IOException if the stream doesn't hold a manifest
+         */
+        public Reader(InputStream in) throws IOException
+        {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            if (this.in.readInt() != MAGIC)
+            {
+                throw new IOException("Not an installation manifest");
+            }
+            int version = this.in.readUnsignedByte();
+            if (version != VERSION)
+            {
+                throw new IOException("Unsupported installation manifest version " + version);
+            }
+            installPath = this.in.readUTF();
+            packs = new String[(int) readVarLong(this.in)];
+            for (int i = 0; i < packs.length; i++)
+            {
+                packs[i] = this.in.readUTF();
+            }
+            count = (int) readVarLong(this.in);
+        }
+
+        public String getInstallPath()
+        {
+            return installPath;
+        }
+
+        /**
+         * Returns the number of entries.
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Reads the next entry.
+         *
+         * @return false if there are no more entries
+         * @throws IOException if the manifest can't be read
+         */
+        public boolean next() throws IOException
+        {
+            if (read == count)
+            {
+                return false;
+            }
+            int shared = (int) readVarLong(in);
+            path = path.substring(0, shared) + in.readUTF();
+            flags = in.readUnsignedByte();
+            size = 0;
+            lastModified = 0;
+            digest = null;
+            if ((flags & DIRECTORY) != 0)
+            {
+                lastModified = readVarLong(in);
+            }
+            else if ((flags & EXISTS) != 0)
+            {
+                size = readVarLong(in);
+                lastModified = readVarLong(in);
+                if ((flags & DIGEST) != 0)
+                {
+                    digest = new byte[DIGEST_LENGTH];
+                    in.readFully(digest);
+                }
+            }
+            packIndex = (int) readVarLong(in);
+            read++;
+            return true;
+        }
+
+        /**
+         * Returns the path of the current entry.
+         */
+        public String getPath()
+        {
+            return path;
+        }
+
+        /**
+         * Returns the pack of the current entry or null, if it doesn't belong to a pack.
+         */
+        public String getPack()
+        {
+            return packIndex > 0 ? packs[packIndex - 1] : null;
+        }
+    }
+}
@@ -22,6 +22,10 @@
 package com.izforge.izpack.util;
 
 import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
 
@@ -47,7 +51,17 @@ public class IoHelper
      */
     private static final String MASKED_SLASH_PLACEHOLDER = "~&_&~";
 
-    private static Properties envVars = null;
+    private static volatile Properties envVars = null;
+
+    /**
+     * How long a free space value is reused, in milliseconds.
+     */
+    private static final long FREE_SPACE_CACHE_TIME = 2000;
+
+    /**
+     * The free space and the time it was read by directory.
+     */
+    private static final Map<String, long[]> freeSpaceCache = new HashMap<String, long[]>();
 
     /**
      * Default constructor
@@ -246,7 +260,8 @@ public class IoHelper
 
     /**
      * Changes the permissions of the given file to the given POSIX permissions. This method will be
-     * raised an exception, if the OS is not UNIX.
+     * raised an exception, if the OS is not UNIX. The permissions are set in-process if
+     * {@link FilePermissions} can express them, otherwise <code>chmod</code> is started.
      *
      * @param path        the absolute path of the file for which the permissions should be changed
      * @param permissions POSIX permissions to be set
@@ -257,6 +272,10 @@ public class IoHelper
         // Perform UNIX
         if (OsVersion.IS_UNIX)
         {
+            if (FilePermissions.chmod(new File(path), permissions))
+            {
+                return;
+            }
             String[] params = {"chmod", permissions, path};
             String[] output = new String[2];
             FileExecutor fe = new FileExecutor();
@@ -270,11 +289,73 @@ public class IoHelper
 
     /**
      * Returns the free (disk) space for the given path. If it is not ascertainable -1 returns.
+     * The space is read by the JVM on Java 6 and later, else by a system command. A value is
+     * reused for the same directory for a short time, since the packs panels ask for it on every
+     * change of the selection.
      *
      * @param path path for which the free space should be detected
      * @return the free space for the given path
      */
     public static long getFreeSpace(String path)
+    {
+        File dir = existingParent(new File(path));
+        String key = dir.getAbsolutePath();
+        long now = System.currentTimeMillis();
+        synchronized (freeSpaceCache)
+        {
+            long[] cached = freeSpaceCache.get(key);
+            if (cached != null && now - cached[1] >= 0 && now - cached[1] < FREE_SPACE_CACHE_TIME)
+            {
+                return cached[0];
+            }
+        }
+        long retval = getUsableSpace(dir);
+        if (retval < 0)
+        {
+            retval = execFreeSpace(path);
+        }
+        synchronized (freeSpaceCache)
+        {
+            freeSpaceCache.put(key, new long[]{retval, now});
+        }
+        return retval;
+    }
+
+    /**
+     * Returns the space available to the JVM on the partition of an existing directory.
+     *
+     * @param dir the directory
+     * @return the available space or -1, if the JVM can't tell
+     */
+    private static long getUsableSpace(File dir)
+    {
+        // the space of a missing file is 0
+        if (!dir.exists())
+        {
+            return -1;
+        }
+        try
+        {
+            return dir.getUsableSpace();
+        }
+        catch (LinkageError e)
+        {
+            // not available before Java 6
+            return -1;
+        }
+        catch (SecurityException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the free space for the given path by running a system command.
+     *
+     * @param path path for which the free space should be detected
+     * @return the free space for the given path or -1
+     */
+    private static long execFreeSpace(String path)
     {
         long retval = -1;
         if (OsVersion.IS_WINDOWS)
@@ -575,9 +656,8 @@ public class IoHelper
     }
 
     /**
-     * Returns the value of the environment variable given by key. This method is a work around for
-     * VM versions which do not support getenv in an other way. At the first call all environment
-     * variables will be loaded via an exec. On Windows keys are not case sensitive.
+     * Returns the value of the environment variable given by key. At the first call all environment
+     * variables of the JVM are loaded. On Windows keys are not case sensitive.
      *
      * @param key variable name for which the value should be resolved
      * @return the value of the environment variable given by key
@@ -600,84 +680,80 @@ public class IoHelper
     }
 
     /**
-     * Loads all environment variables via an exec.
+     * Loads all environment variables of the JVM.
      */
-    private static void loadEnv()
+    private static synchronized void loadEnv()
     {
-        String[] output = new String[2];
-        String[] params;
-        if (OsVersion.IS_WINDOWS)
-        {
-            String command = "cmd.exe";
-            if (System.getProperty("os.name").toLowerCase().indexOf("windows 9") > -1)
-            {
-                command = "command.com";
-            }
-            String[] paramst = {command, "/C", "set"};
-            params = paramst;
-        }
-        else
-        {
-            String[] paramst = {"env"};
-            params = paramst;
-        }
-        FileExecutor fe = new FileExecutor();
-        fe.executeCommand(params, output);
-        if (output[0].length() <= 0)
+        if (envVars != null)
         {
             return;
         }
-        String lineSep = System.getProperty("line.separator");
-        StringTokenizer st = new StringTokenizer(output[0], lineSep);
-        envVars = new Properties();
-        String var = null;
-        while (st.hasMoreTokens())
+        Properties vars = new Properties();
+        for (Map.Entry<String, String> var : System.getenv().entrySet())
         {
-            String line = st.nextToken();
-            if (line.indexOf('=') == -1)
-            { // May be a env var with a new line in it.
-                if (var == null)
-                {
-                    var = lineSep + line;
-                }
-                else
-                {
-                    var += lineSep + line;
-                }
-            }
-            else
-            { // New var, perform the previous one.
-                setEnvVar(var);
-                var = line;
+            String key = var.getKey();
+            // On windows change all key chars to upper.
+            if (OsVersion.IS_WINDOWS)
+            {
+                key = key.toUpperCase();
             }
+            vars.setProperty(key, var.getValue());
         }
-        setEnvVar(var);
+        envVars = vars;
     }
 
     /**
-     * Extracts key and value from the given string var. The key should be separated from the value
-     * by a sign. On Windows all chars of the key are translated to upper case.
+     * Creates a digest of the kind used to identify the content of packed and installed files
+     * (SHA-1).
      *
-     * @param var
+     * @return the digest
+     * @throws IOException if SHA-1 is not available
      */
-    private static void setEnvVar(String var)
+    public static MessageDigest createDigest() throws IOException
     {
-        if (var == null)
+        try
         {
-            return;
+            return MessageDigest.getInstance("SHA-1");
         }
-        int index = var.indexOf('=');
-        if (index < 0)
+        catch (NoSuchAlgorithmException e)
         {
-            return;
+            throw new IOException("SHA-1 not available: " + e.getMessage());
         }
-        String key = var.substring(0, index);
-        // On windows change all key chars to upper.
-        if (OsVersion.IS_WINDOWS)
+    }
+
+    /**
+     * Computes the digest of the content of a stream, see {@link #createDigest()}. The stream is
+     * read to its end but not closed.
+     *
+     * @param in the stream to read
+     * @return the digest as hexadecimal string
+     * @throws IOException if an I/O error occurs
+     */
+    public static String digest(InputStream in) throws IOException
+    {
+        MessageDigest md = createDigest();
+        byte[] buffer = new byte[5120];
+        int bytesInBuffer;
+        while ((bytesInBuffer = in.read(buffer)) != -1)
         {
-            key = key.toUpperCase();
+            md.update(buffer, 0, bytesInBuffer);
         }
-        envVars.setProperty(key, var.substring(index + 1));
+        return toHexString(md.digest());
+    }
 
+    /**
+     * Returns a digest as hexadecimal string.
+     *
+     * @param digest the digest
+     * @return the hexadecimal string
+     */
+    public static String toHexString(byte[] digest)
+    {
+        StringBuffer result = new StringBuffer();
+        for (int i = 0; i < digest.length; i++)
+        {
+            result.append(Integer.toHexString((digest[i] & 0xff) | 0x100).substring(1));
+        }
+        return result.toString();
     }
 }
@@ -290,35 +290,23 @@ public class VariableSubstitutor implements Serializable
         int t = getTypeConstant(type);
 
         // determine character which starts (and ends) a variable
-        char variable_start = '$';
-        char variable_end = '\0';
-        if (t == TYPE_SHELL)
-        {
-            variable_start = '%';
-        }
-        else if (t == TYPE_AT)
-        {
-            variable_start = '@';
-        }
-        else if (t == TYPE_ANT)
-        {
-            variable_start = '@';
-            variable_end = '@';
-        }
-
+        char variable_start = getVariableStart(t);
+        char variable_end = getVariableEnd(t);
 
         int subs = 0;
 
         // Copy data and substitute variables
-        int c = reader.read();
+        CharScanner scanner = new CharScanner(reader);
+        StringBuffer nameBuffer = new StringBuffer();
+        int c = scanner.read();
 
         while (true)
         {
             // Find the next potential variable reference or EOF
-            while (c != -1 && c != variable_start)
+            if (c != -1 && c != variable_start)
             {
                 writer.write(c);
-                c = reader.read();
+                c = scanner.copyUntil(variable_start, writer);
             }
             if (c == -1)
             {
@@ -327,11 +315,11 @@ public class VariableSubstitutor implements Serializable
 
             // Check if braces used or start char escaped
             boolean braces = false;
-            c = reader.read();
+            c = scanner.read();
             if (c == '{')
             {
                 braces = true;
-                c = reader.read();
+                c = scanner.read();
             }
             else if (bracesRequired)
             {
@@ -345,34 +333,20 @@ public class VariableSubstitutor implements Serializable
             }
 
             // Read the variable name
-            StringBuffer nameBuffer = new StringBuffer();
-            while (c != -1 && (braces && c != '}') || (c >= 'a' && c <= 'z')
-                    || (c >= 'A' && c <= 'Z') || (braces && (c == '[') || (c == ']'))
-                    || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && nameBuffer.length() > 0))
+            nameBuffer.setLength(0);
+            while (isNameChar(c, braces, nameBuffer.length()))
             {
                 nameBuffer.append((char) c);
-                c = reader.read();
+                c = scanner.read();
             }
             String name = nameBuffer.toString();
 
             // Check if a legal and defined variable found
             String varvalue = null;
 
-            if (((!braces || c == '}') &&
-                    (!braces || variable_end == '\0' || variable_end == c)
-            ) && name.length() > 0)
+            if (isReference(name, braces, c, variable_end))
             {
-                // check for environment variables
-                if (braces && name.startsWith("ENV[")
-                        && (name.lastIndexOf(']') == name.length() - 1))
-                {
-                    varvalue = IoHelper.getenv(name.substring(4, name.length() - 1));
-                }
-                else
-                {
-                    varvalue = variables.getProperty(name);
-                }
-
+                varvalue = getValue(name, braces);
                 subs++;
             }
 
@@ -382,7 +356,7 @@ public class VariableSubstitutor implements Serializable
                 writer.write(escapeSpecialChars(varvalue, t));
                 if (braces || variable_end != '\0')
                 {
-                    c = reader.read();
+                    c = scanner.read();
                 }
             }
             // ...or ignore it
@@ -398,6 +372,102 @@ public class VariableSubstitutor implements Serializable
         }
     }
 
+    /**
+     * Reads the data of the specified reader into a template which substitutes the variables
+     * whenever it is written. The result of writing the template is the same as substituting the
+     * variables in the data with the variable values at that time, but the data is scanned only
+     * once.
+     *
+     * @param reader the reader to read
+     * @param type   the file type or null for plain
+     * @return the template
+     * @throws IllegalArgumentException if unknown file type specified
+     * @throws IOException              if an I/O error occurs
+     */
+    public Template compile(Reader reader, String type)
+            throws IllegalArgumentException, IOException
+    {
+        CharArrayWriter data = new CharArrayWriter();
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = reader.read(buffer)) != -1)
+        {
+            data.write(buffer, 0, n);
+        }
+        return new Template(data.toCharArray(), getTypeConstant(type));
+    }
+
+    /**
+     * Returns the character which starts a variable in a file of the specified type.
+     */
+    private static char getVariableStart(int type)
+    {
+        switch (type)
+        {
+            case TYPE_SHELL:
+                return '%';
+            case TYPE_AT:
+            case TYPE_ANT:
+                return '@';
+            default:
+                return '$';
+        }
+    }
+
+    /**
+     * Returns the character which ends a variable in a file of the specified type, or '\0' if
+     * there is none.
+     */
+    private static char getVariableEnd(int type)
+    {
+        return (type == TYPE_ANT) ? '@' : '\0';
+    }
+
+    /**
+     * Whether a character continues the name of a variable.
+     *
+     * @param c          the character or -1 at the end of the data
+     * @param braces     whether the name is enclosed in braces
+     * @param nameLength the number of characters of the name so far
+     */
+    private static boolean isNameChar(int c, boolean braces, int nameLength)
+    {
+        return c != -1 && (braces && c != '}') || (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z') || (braces && (c == '[') || (c == ']'))
+                || (((c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-') && nameLength > 0);
+    }
+
+    /**
+     * Whether a name is a legal variable reference.
+     *
+     * @param name         the name
+     * @param braces       whether the name is enclosed in braces
+     * @param c            the character following the name or -1 at the end of the data
+     * @param variable_end the character which ends a variable or '\0'
+     */
+    private static boolean isReference(String name, boolean braces, int c, char variable_end)
+    {
+        return ((!braces || c == '}') && (!braces || variable_end == '\0' || variable_end == c))
+                && name.length() > 0;
+    }
+
+    /**
+     * Returns the value of a variable.
+     *
+     * @param name   the name of the variable
+     * @param braces whether the name is enclosed in braces
+     * @return the value or null if the variable is undefined
+     */
+    private String getValue(String name, boolean braces)
+    {
+        // check for environment variables
+        if (braces && name.startsWith("ENV[") && (name.lastIndexOf(']') == name.length() - 1))
+        {
+            return IoHelper.getenv(name.substring(4, name.length() - 1));
+        }
+        return variables.getProperty(name);
+    }
+
     /**
      * Returns the internal constant for the specified file type.
      *
@@ -528,5 +598,244 @@ public class VariableSubstitutor implements Serializable
                 throw new Error("Unknown file type constant " + type);
         }
     }
-}
 
+    /**
+     * A reader which reads blocks of characters and hands them out one by one.
+     */
+    private static class CharScanner
+    {
+        private final Reader reader;
+
+        private final char[] buffer = new char[8192];
+
+        private int position = 0;
+
+        private int limit = 0;
+
+        CharScanner(Reader reader)
+        {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads a character.
+         *
+         * @return the character or -1 at the end of the data
+         */
+        int read() throws IOException
+        {
+            if (position == limit && !fill())
+            {
+                return -1;
+            }
+            return buffer[position++];
+        }
+
+        /**
+         * Copies the characters up to the next occurrence of a character.
+         *
+         * @param stop   the character to stop at
+         * @param writer the writer to copy to
+         * @return the character stopped at or -1 at the end of the data
+         */
+        int copyUntil(char stop, Writer writer) throws IOException
+        {
+            while (position < limit || fill())
+            {
+                int start = position;
+                while (position < limit && buffer[position] != stop)
+                {
+                    position++;
+                }
+                writer.write(buffer, start, position - start);
+                if (position < limit)
+                {
+                    return buffer[position++];
+                }
+            }
+            return -1;
+        }
+
+        private boolean fill() throws IOException
+        {
+            int n = reader.read(buffer, 0, buffer.length);
+            while (n == 0)
+            {
+                n = reader.read(buffer, 0, buffer.length);
+            }
+            position = 0;
+            limit = Math.max(n, 0);
+            return n > 0;
+        }
+    }
+
+    /**
+     * Data with variable references found once, written with the current values of the variables.
+     *
+     * @see VariableSubstitutor#compile(Reader, String)
+     */
+    public class Template
+    {
+        private final char[] data;
+
+        private final int type;
+
+        private final char variable_start;
+
+        /**
+         * The positions of the start characters of potential variable references.
+         */
+        private final int[] starts;
+
+        /**
+         * The variable references beginning at the positions in {@link #starts}.
+         */
+        private final Reference[] references;
+
+        Template(char[] data, int type)
+        {
+            this.data = data;
+            this.type = type;
+            this.variable_start = getVariableStart(type);
+            char variable_end = getVariableEnd(type);
+
+            int count = 0;
+            for (char c : data)
+            {
+                if (c == variable_start)
+                {
+                    count++;
+                }
+            }
+            starts = new int[count];
+            references = new Reference[count];
+            count = 0;
+            for (int i = 0; i < data.length; i++)
+            {
+                if (data[i] == variable_start)
+                {
+                    starts[count] = i;
+                    references[count] = parseReference(i, variable_end);
+                    count++;
+                }
+            }
+        }
+
+        /**
+         * Writes the data substituting the variables with their current values.
+         *
+         * @param writer the writer to write to
+         * @return the number of substitutions made
+         * @throws IOException if an I/O error occurs
+         */
+        public int write(Writer writer) throws IOException
+        {
+            int subs = 0;
+            int position = 0;
+            int k = 0;
+            while (true)
+            {
+                // Find the next variable reference we did not skip
+                while (k < starts.length && starts[k] < position)
+                {
+                    k++;
+                }
+                int end = (k < starts.length) ? starts[k] : data.length;
+                writer.write(data, position, end - position);
+                if (k == starts.length)
+                {
+                    return subs;
+                }
+
+                Reference reference = references[k];
+                String varvalue = null;
+                if (reference.name != null)
+                {
+                    varvalue = getValue(reference.name, reference.braces);
+                    subs++;
+                }
+                if (varvalue != null)
+                {
+                    writer.write(escapeSpecialChars(varvalue, type));
+                    position = reference.endIfDefined;
+                }
+                else
+                {
+                    writer.write(reference.text);
+                    position = reference.end;
+                }
+            }
+        }
+
+        /**
+         * Reads the potential variable reference at the specified position, the same way
+         * {@link VariableSubstitutor#substitute(Reader, Writer, String)} does.
+         */
+        private Reference parseReference(int start, char variable_end)
+        {
+            int i = start + 1;
+            int c = (i < data.length) ? data[i] : -1;
+            boolean braces = false;
+            if (c == '{')
+            {
+                braces = true;
+                c = (++i < data.length) ? data[i] : -1;
+            }
+            else if (bracesRequired || c == -1)
+            {
+                return new Reference(null, false, String.valueOf(variable_start), i, i);
+            }
+
+            int nameStart = i;
+            while (isNameChar(c, braces, i - nameStart))
+            {
+                c = (++i < data.length) ? data[i] : -1;
+            }
+            String name = new String(data, nameStart, i - nameStart);
+            String text = new String(data, start, i - start);
+            int endIfDefined = (braces || variable_end != '\0') ? Math.min(i + 1, data.length) : i;
+            if (!isReference(name, braces, c, variable_end))
+            {
+                name = null;
+            }
+            return new Reference(name, braces, text, i, endIfDefined);
+        }
+    }
+
+    /**
+     * A potential variable reference of a template.
+     */
+    private static class Reference
+    {
+        /**
+         * The name of the variable or null if this is no legal reference.
+         */
+        private final String name;
+
+        private final boolean braces;
+
+        /**
+         * The text written if the variable is undefined.
+         */
+        private final String text;
+
+        /**
+         * The position after the reference if the variable is undefined.
+         */
+        private final int end;
+
+        /**
+         * The position after the reference if the variable is defined.
+         */
+        private final int endIfDefined;
+
+        Reference(String name, boolean braces, String text, int end, int endIfDefined)
+        {
+            this.name = name;
+            this.braces = braces;
+            this.text = text;
+            this.end = end;
+            this.endIfDefined = endIfDefined;
+        }
+    }
+}
@@ -9,10 +9,15 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
+import com.izforge.izpack.util.Debug;
 
 /**
  * The pkg Java API isn't complete yet, so this class is intended to complete it
@@ -27,6 +32,12 @@ import java.util.zip.ZipInputStream;
  */
 public class ExtendedImage extends Image
 {
+	/**
+	 * The state of the images, by image folder. Shared by every instance of an
+	 * image.
+	 */
+	private static final Map<File, ImageState> states = new HashMap<File, ImageState>();
+
 	/**
 	 * Extract, at location given by dir, a predefined image suitable for
 	 * package operations. No attempt to retrieve catalogs will be made
@@ -71,7 +82,13 @@ public class ExtendedImage extends Image
 			template.closeEntry();
 		}
 		template.close();
-		return new ExtendedImage(dir);
+		ExtendedImage image = new ExtendedImage(dir);
+		synchronized (states)
+		{
+			// forget what was known about a former image in this folder
+			states.remove(image.getStateKey());
+		}
+		return image;
 	}
 
 	/**
@@ -98,7 +115,8 @@ public class ExtendedImage extends Image
 
 	/**
 	 * Update an existing authority or add an additional package authority, and
-	 * set the specified authority as the preferred authority.
+	 * set the specified authority as the preferred authority. The catalog is
+	 * not refreshed again if it was already refreshed with the same origin.
 	 * 
 	 * @param origin The URL prefix for the origin repository for the authority.
 	 * @throws IOException When this image can't be updated.
@@ -108,7 +126,157 @@ public class ExtendedImage extends Image
 		String authname = origin.getHost();
 		setAuthority(authname, origin, null);
 		saveConfig();
+		Map<String, URL> refreshed = getState().refreshedAuthorities;
+		if (origin.equals(refreshed.get(authname)))
+		{
+			Debug.trace("Catalog of authority " + authname + " is up to date");
+			return;
+		}
 		refreshCatalog(authname);
+		refreshed.put(authname, origin);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setAuthority (String authname, URL origin, String uuid)
+			throws IOException
+	{
+		super.setAuthority(authname, origin, uuid);
+		Map<String, URL> refreshed = getState().refreshedAuthorities;
+		if (!origin.equals(refreshed.get(authname)))
+		{
+			refreshed.remove(authname);
+			invalidateInventory();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void refreshCatalog (String authname) throws IOException
+	{
+		long start = System.currentTimeMillis();
+		super.refreshCatalog(authname);
+		invalidateInventory();
+		Debug.trace("Refreshed catalog of authority " + authname + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void refreshCatalogs () throws IOException
+	{
+		long start = System.currentTimeMillis();
+		super.refreshCatalogs();
+		invalidateInventory();
+		Debug.trace("Refreshed all catalogs in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void installPackages (List<Fmri> fmris) throws IOException,
+			Constraint.ConstraintException
+	{
+		super.installPackages(fmris);
+		invalidateInventory();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void installPackages (String... pkgs) throws IOException,
+			Constraint.ConstraintException
+	{
+		super.installPackages(pkgs);
+		invalidateInventory();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void uninstallPackages (List<Fmri> fmris) throws IOException
+	{
+		super.uninstallPackages(fmris);
+		invalidateInventory();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void uninstallPackages (String... pkgs) throws IOException
+	{
+		super.uninstallPackages(pkgs);
+		invalidateInventory();
+	}
+
+	/**
+	 * Forget the cached inventory. This has to be called after an
+	 * {@link ImagePlan} of this image was executed.
+	 */
+	public void invalidateInventory ()
+	{
+		ImageState state = getState();
+		synchronized (state)
+		{
+			state.catalogVersion++;
+		}
+	}
+
+	/**
+	 * @return The number of times the catalogs or the installed packages of
+	 *         this image changed, which tells whether an inventory read before
+	 *         is still current.
+	 */
+	public int getCatalogVersion ()
+	{
+		ImageState state = getState();
+		synchronized (state)
+		{
+			return state.catalogVersion;
+		}
+	}
+
+	/**
+	 * Get the inventory of the packages. The inventory of all known packages is
+	 * read only once until the catalogs or the installed packages change.
+	 * 
+	 * @see Image#getInventory(String[], boolean)
+	 */
+	@Override
+	public List<FmriState> getInventory (String[] pkg_list, boolean all_known)
+	{
+		if (pkg_list != null || !all_known)
+		{
+			return super.getInventory(pkg_list, all_known);
+		}
+		ImageState state = getState();
+		synchronized (state)
+		{
+			if (state.inventory == null
+					|| state.inventoryVersion != state.catalogVersion)
+			{
+				long start = System.currentTimeMillis();
+				state.inventory = Collections.unmodifiableList(super
+						.getInventory(null, true));
+				state.inventoryNames = null;
+				state.inventoryVersion = state.catalogVersion;
+				Debug.trace("Read inventory of " + state.inventory.size()
+						+ " packages in "
+						+ (System.currentTimeMillis() - start) + " ms");
+			}
+			return state.inventory;
+		}
 	}
 
 	/**
@@ -118,11 +286,83 @@ public class ExtendedImage extends Image
 	 */
 	public Set<String> getInventory ()
 	{
-		HashSet<String> pkgset = new HashSet<String>();
-		for (FmriState s: getInventory(null, true))
+		ImageState state = getState();
+		synchronized (state)
+		{
+			List<FmriState> inventory = getInventory(null, true);
+			if (state.inventoryNames == null)
+			{
+				HashSet<String> pkgset = new HashSet<String>();
+				for (FmriState s: inventory)
+				{
+					pkgset.add(s.fmri.getName());
+				}
+				state.inventoryNames = Collections.unmodifiableSet(pkgset);
+			}
+			return state.inventoryNames;
+		}
+	}
+
+	/**
+	 * @return The key of the state of this image.
+	 */
+	private File getStateKey ()
+	{
+		return getRootDirectory().getAbsoluteFile();
+	}
+
+	/**
+	 * @return The state of this image, shared with the other instances of
+	 *         this image.
+	 */
+	private ImageState getState ()
+	{
+		synchronized (states)
 		{
-			pkgset.add(s.fmri.getName());
+			File dir = getStateKey();
+			ImageState state = states.get(dir);
+			if (state == null)
+			{
+				state = new ImageState();
+				states.put(dir, state);
+			}
+			return state;
 		}
-		return pkgset;
+	}
+
+	/**
+	 * What is known about an image folder. The inventory is only valid as long
+	 * as the catalog version it was read at is current.
+	 */
+	private static class ImageState
+	{
+		/**
+		 * The origins of the authorities whose catalogs were refreshed, by
+		 * authority name.
+		 */
+		final Map<String, URL> refreshedAuthorities = Collections
+				.synchronizedMap(new HashMap<String, URL>());
+
+		/**
+		 * The number of times the catalogs or the installed packages of the
+		 * image changed.
+		 */
+		int catalogVersion = 0;
+
+		/**
+		 * The inventory of all known packages, or null if it was not read yet.
+		 */
+		List<FmriState> inventory = null;
+
+		/**
+		 * The catalog version {@link #inventory} was read at.
+		 */
+		int inventoryVersion = 0;
+
+		/**
+		 * The names of the packages in {@link #inventory}, or null if they
+		 * have to be collected again.
+		 */
+		Set<String> inventoryNames = null;
 	}
 }
@@ -53,4 +53,21 @@ public class LocaleDatabaseTest extends TestCase
                 "string.with.quoted.arguments", new String[]{"one", null}));
     }
 
+    public void testLayered() throws Exception
+    {
+        String langpack = "<langpack><str id=\"string\" txt=\"Layered Text\"/>"
+                + "<str id=\"layered\" txt=\"Layer\"/></langpack>";
+        LocaleDatabase layered = new LocaleDatabase(_db, new java.io.ByteArrayInputStream(
+                langpack.getBytes("UTF-8")));
+        TestCase.assertEquals("Layered Text", layered.getString("string"));
+        TestCase.assertEquals("Layer", layered.getString("layered"));
+        TestCase.assertEquals("Argument1: one, Argument2: N/A", layered.getString(
+                "string.with.arguments", new String[]{"one", null}));
+        TestCase.assertTrue(layered.containsKey("string.with.arguments"));
+
+        // the parent is not modified
+        TestCase.assertEquals("String Text", _db.getString("string"));
+        TestCase.assertFalse(_db.containsKey("layered"));
+    }
+
 }
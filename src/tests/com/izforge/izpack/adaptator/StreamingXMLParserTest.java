@@ -0,0 +1,120 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.adaptator;
+
+import com.izforge.izpack.adaptator.impl.StreamingXMLParser;
+import com.izforge.izpack.adaptator.impl.XMLParser;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.util.Vector;
+
+/**
+ * Test on the StreamingXMLParser
+ */
+public class StreamingXMLParserTest extends TestCase
+{
+    private static final String filename = "partial.xml";
+
+    private static final String[] packsPath = {"installation", "packs", "pack"};
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite(StreamingXMLParserTest.class);
+    }
+
+    public void testStreamedElements() throws IOException, SAXException
+    {
+        IXMLElement full = new XMLParser().parse(
+                StreamingXMLParserTest.class.getResourceAsStream(filename));
+        final Vector<IXMLElement> packs = full.getFirstChildNamed("packs").getChildrenNamed("pack");
+
+        final Vector<IXMLElement> streamed = new Vector<IXMLElement>();
+        StreamingXMLParser parser = new StreamingXMLParser(new StreamingXMLParser.ElementHandler()
+        {
+            public void handleElement(IXMLElement element)
+            {
+                streamed.add(element);
+            }
+        }, packsPath);
+        IXMLElement root = parser.parse(StreamingXMLParserTest.class.getResourceAsStream(filename));
+
+        assertEquals(packs.size(), streamed.size());
+        for (int i = 0; i < packs.size(); i++)
+        {
+            IXMLElement pack = packs.get(i);
+            IXMLElement streamedPack = streamed.get(i);
+            assertEquals(pack.getAttribute("name"), streamedPack.getAttribute("name"));
+            assertEquals(pack.getLineNr(), streamedPack.getLineNr());
+            assertEquals(pack.getChildrenCount(), streamedPack.getChildrenCount());
+            assertEquals(pack.getFirstChildNamed("description").getContent(),
+                    streamedPack.getFirstChildNamed("description").getContent());
+        }
+
+        // the tree keeps everything but the streamed elements
+        assertEquals(full.getChildrenCount(), root.getChildrenCount());
+        assertEquals(0, root.getFirstChildNamed("packs").getChildrenNamed("pack").size());
+        assertEquals(7, root.getFirstChildNamed("guiprefs").getChildrenNamed("modifier").size());
+        assertEquals(full.getFirstChildNamed("locale").getLineNr(),
+                root.getFirstChildNamed("locale").getLineNr());
+    }
+
+    public void testNoRetainedTree() throws IOException, SAXException
+    {
+        final int[] count = new int[1];
+        StreamingXMLParser parser = new StreamingXMLParser(new StreamingXMLParser.ElementHandler()
+        {
+            public void handleElement(IXMLElement element)
+            {
+                count[0]++;
+            }
+        }, packsPath);
+        parser.setRetainTree(false);
+        assertNull(parser.parse(StreamingXMLParserTest.class.getResourceAsStream(filename)));
+        assertEquals(8, count[0]);
+    }
+
+    public void testHandlerFailure() throws IOException
+    {
+        final Exception failure = new Exception("failed");
+        StreamingXMLParser parser = new StreamingXMLParser(new StreamingXMLParser.ElementHandler()
+        {
+            public void handleElement(IXMLElement element) throws Exception
+            {
+                throw failure;
+            }
+        }, packsPath);
+        try
+        {
+            parser.parse(StreamingXMLParserTest.class.getResourceAsStream(filename));
+            fail("The handler failure was not reported");
+        }
+        catch (SAXException e)
+        {
+            assertSame(failure, e.getException());
+        }
+    }
+}
@@ -120,4 +120,33 @@ public class XMLElementTest extends TestCase
         Vector<IXMLElement> list = element.getChildrenNamed("modifier");
         assertEquals(list.size(), 7);
     }
+
+    public void testGetChildrenNamedDirectOnly()
+    {
+        assertEquals(root.getChildrenNamed("modifier").size(), 0);
+        assertNull(root.getFirstChildNamed("modifier"));
+    }
+
+    public void testGetChildrenNamedAfterChange()
+    {
+        assertEquals(root.getChildrenNamed("child").size(), 0);
+        root.addChild(new XMLElementImpl("child", root));
+        assertEquals(root.getChildrenNamed("child").size(), 1);
+        root.removeChild(root.getFirstChildNamed("child"));
+        assertNull(root.getFirstChildNamed("child"));
+    }
+
+    public void testGetChildrenNamedDescendantMatching()
+    {
+        XMLElementImpl.setDescendantMatching(true);
+        try
+        {
+            assertEquals(root.getChildrenNamed("modifier").size(), 7);
+            assertEquals(root.getFirstChildNamed("modifier").getAttribute("key"), "layoutAnchor");
+        }
+        finally
+        {
+            XMLElementImpl.setDescendantMatching(false);
+        }
+    }
 }
\ No newline at end of file
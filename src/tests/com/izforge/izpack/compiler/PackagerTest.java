@@ -0,0 +1,249 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler;
+
+import com.izforge.izpack.Info;
+import com.izforge.izpack.Pack;
+import com.izforge.izpack.PackFile;
+import com.izforge.izpack.adaptator.IXMLElement;
+import com.izforge.izpack.adaptator.impl.XMLElementImpl;
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Pack200;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class PackagerTest extends TestCase
+{
+    private String izpackHome;
+
+    private File workDir;
+
+    private File installDir;
+
+    protected void setUp() throws Exception
+    {
+        workDir = File.createTempFile("packager", "");
+        workDir.delete();
+        workDir.mkdirs();
+        installDir = new File(workDir, "install");
+        installDir.mkdirs();
+
+        // an empty skeleton installer is enough to write the packs
+        izpackHome = Compiler.IZPACK_HOME;
+        Compiler.IZPACK_HOME = workDir.getPath();
+        File skeleton = new File(workDir, PackagerBase.SKELETON_SUBPATH);
+        skeleton.getParentFile().mkdirs();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(skeleton));
+        out.putNextEntry(new ZipEntry("skeleton.txt"));
+        out.write("skeleton".getBytes());
+        out.closeEntry();
+        out.close();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        Compiler.IZPACK_HOME = izpackHome;
+        delete(workDir);
+    }
+
+    private void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    public void testPack200JarWithIdenticalPlainFile() throws Exception
+    {
+        File jar = createJar("lib.jar");
+        File copy = copy(jar, "lib.bin");
+        File installer = createInstaller(new File[]{jar, copy});
+
+        install(installer);
+        assertJar(new File(installDir, "lib.jar"));
+        assertContent(copy, new File(installDir, "lib.bin"));
+    }
+
+    public void testPlainFileWithIdenticalPack200Jar() throws Exception
+    {
+        File jar = createJar("lib.jar");
+        File copy = copy(jar, "lib.bin");
+        File installer = createInstaller(new File[]{copy, jar});
+
+        install(installer);
+        assertContent(copy, new File(installDir, "lib.bin"));
+        assertJar(new File(installDir, "lib.jar"));
+    }
+
+    private File createJar(String name) throws IOException
+    {
+        File jar = new File(workDir, name);
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        out.putNextEntry(new ZipEntry("readme.txt"));
+        out.write("Hello from the jar".getBytes());
+        out.closeEntry();
+        out.close();
+        return jar;
+    }
+
+    private File copy(File file, String name) throws IOException
+    {
+        File copy = new File(workDir, name);
+        FileInputStream in = new FileInputStream(file);
+        FileOutputStream out = new FileOutputStream(copy);
+        PackagerHelper.copyStream(in, out);
+        in.close();
+        out.close();
+        return copy;
+    }
+
+    /**
+     * Builds an installer with pack200 compression and content deduplication, putting each file
+     * into a pack of its own so that identical files are shared between the packs.
+     */
+    private File createInstaller(File[] files) throws Exception
+    {
+        Info info = new Info();
+        info.setPack200Compression(true);
+
+        Packager packager = new Packager();
+        packager.setInfo(info);
+        IXMLElement config = new XMLElementImpl("packager");
+        config.setAttribute("deduplicate", "true");
+        packager.addConfigurationInformation(config);
+
+        for (int i = 0; i < files.length; i++)
+        {
+            PackInfo pack = new PackInfo("pack" + i, "pack" + i, "", true, false, null, true);
+            pack.addFile(workDir, files[i], "$INSTALL_PATH/" + files[i].getName(), null,
+                    PackFile.OVERRIDE_TRUE, null, null);
+            packager.addPack(pack);
+        }
+
+        File installer = new File(workDir, "installer.jar");
+        packager.createInstaller(installer);
+        return installer;
+    }
+
+    /**
+     * Reads the packs of the installer back the way the unpacker does and writes the files into
+     * the install directory.
+     */
+    private void install(File installer) throws Exception
+    {
+        ZipFile zip = new ZipFile(installer);
+        try
+        {
+            ObjectInputStream packsInfo = new ObjectInputStream(zip.getInputStream(zip.getEntry("packs.info")));
+            int count = packsInfo.readInt();
+            List<Pack> packs = new ArrayList<Pack>();
+            for (int i = 0; i < count; i++)
+            {
+                packs.add((Pack) packsInfo.readObject());
+            }
+
+            for (Pack pack : packs)
+            {
+                ObjectInputStream objIn = new ObjectInputStream(zip.getInputStream(zip.getEntry("packs/pack-" + pack.id)));
+                int files = objIn.readInt();
+                for (int i = 0; i < files; i++)
+                {
+                    PackFile pf = (PackFile) objIn.readObject();
+                    ObjectInputStream pis = objIn;
+                    if (pf.hasSharedData())
+                    {
+                        pis = new ObjectInputStream(zip.getInputStream(zip.getEntry("packs/shared-" + pf.getSharedDataId())));
+                    }
+                    File target = new File(installDir, new File(pf.getTargetPath()).getName());
+                    if (pf.isPack200Jar())
+                    {
+                        int key = pis.readInt();
+                        ZipEntry entry = zip.getEntry("packs/pack200-" + key);
+                        assertNotNull("pack200 entry " + key, entry);
+                        JarOutputStream out = new JarOutputStream(new FileOutputStream(target));
+                        Pack200.newUnpacker().unpack(zip.getInputStream(entry), out);
+                        out.close();
+                    }
+                    else
+                    {
+                        byte[] data = new byte[(int) pf.length()];
+                        int bytesRead = 0;
+                        while (bytesRead < data.length)
+                        {
+                            int read = pis.read(data, bytesRead, data.length - bytesRead);
+                            if (read == -1)
+                            {
+                                throw new IOException("Unexpected end of stream (installer corrupted?)");
+                            }
+                            bytesRead += read;
+                        }
+                        FileOutputStream out = new FileOutputStream(target);
+                        out.write(data);
+                        out.close();
+                    }
+                }
+            }
+        }
+        finally
+        {
+            zip.close();
+        }
+    }
+
+    private void assertJar(File file) throws IOException
+    {
+        ZipFile jar = new ZipFile(file);
+        try
+        {
+            assertNotNull(jar.getEntry("readme.txt"));
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+    private void assertContent(File expected, File actual) throws IOException
+    {
+        assertTrue(Arrays.equals(read(expected), read(actual)));
+    }
+
+    private byte[] read(File file) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileInputStream in = new FileInputStream(file);
+        PackagerHelper.copyStream(in, out);
+        in.close();
+        return out.toByteArray();
+    }
+}
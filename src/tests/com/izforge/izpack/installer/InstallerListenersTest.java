@@ -0,0 +1,155 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer;
+
+import com.izforge.izpack.Pack;
+import com.izforge.izpack.PackFile;
+import com.izforge.izpack.event.InstallerFileBatchListener;
+import com.izforge.izpack.event.InstallerListener;
+import com.izforge.izpack.event.SimpleInstallerListener;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class InstallerListenersTest extends TestCase
+{
+    private UnpackerBase unpacker;
+
+    protected void setUp() throws Exception
+    {
+        unpacker = new UnpackerBase(AutomatedInstallData.getInstance(), null)
+        {
+            public void run()
+            {
+            }
+        };
+    }
+
+    /**
+     * Records the file events.
+     */
+    private static class FileListener extends SimpleInstallerListener
+    {
+        final List<String> events = new ArrayList<String>();
+
+        public boolean isFileListener()
+        {
+            return true;
+        }
+
+        public void beforeFile(File file, PackFile pf)
+        {
+            events.add("before " + file.getName());
+        }
+
+        public void afterFile(File file, PackFile pf)
+        {
+            events.add("after " + file.getName());
+        }
+
+        public void afterPack(Pack pack, Integer i, com.izforge.izpack.util.AbstractUIProgressHandler handler)
+        {
+            events.add("pack");
+        }
+    }
+
+    /**
+     * Records the batches.
+     */
+    private static class BatchListener extends SimpleInstallerListener
+            implements InstallerFileBatchListener
+    {
+        final List<Integer> batches = new ArrayList<Integer>();
+
+        public void afterFiles(List<File> files, List<PackFile> packFiles)
+        {
+            assertEquals(files.size(), packFiles.size());
+            batches.add(files.size());
+        }
+    }
+
+    public void testNoListeners() throws Exception
+    {
+        InstallerListeners listeners = new InstallerListeners(new ArrayList(), unpacker);
+        assertFalse(listeners.hasFileListeners());
+        assertFalse(listeners.hasAfterFileListeners());
+        listeners.afterFile(new File("a"), null);
+        listeners.afterPacks(null, null);
+    }
+
+    public void testFileListener() throws Exception
+    {
+        FileListener listener = new FileListener();
+        InstallerListeners listeners = new InstallerListeners(Arrays.asList(listener), unpacker);
+        assertTrue(listeners.hasFileListeners());
+        listeners.beforeFile(new File("a"), null);
+        listeners.afterFile(new File("a"), null);
+        listeners.afterPack(null, 0, null);
+        assertEquals(Arrays.asList("before a", "after a", "pack"), listener.events);
+    }
+
+    public void testBatches() throws Exception
+    {
+        BatchListener batch = new BatchListener();
+        InstallerListeners listeners = new InstallerListeners(Arrays.asList(batch), unpacker);
+        // only the batches are wanted
+        assertFalse(listeners.hasFileListeners());
+        assertTrue(listeners.hasAfterFileListeners());
+        for (int i = 0; i < InstallerListeners.BATCH_SIZE + 10; i++)
+        {
+            listeners.afterFile(new File("file" + i), null);
+        }
+        assertEquals(Arrays.asList(InstallerListeners.BATCH_SIZE), batch.batches);
+        listeners.afterPack(null, 0, null);
+        assertEquals(Arrays.asList(InstallerListeners.BATCH_SIZE, 10), batch.batches);
+        listeners.afterPacks(null, null);
+        assertEquals(2, batch.batches.size());
+    }
+
+    public void testDeprecatedCustomActions() throws Exception
+    {
+        FileListener listener = new FileListener();
+        BatchListener batch = new BatchListener();
+        AutomatedInstallData idata = AutomatedInstallData.getInstance();
+        List old = idata.customData.get("/installerListeners");
+        idata.customData.put("/installerListeners", Arrays.asList(listener, batch));
+        try
+        {
+            List[] customActions = unpacker.getCustomActions();
+            // the file listeners are still appended
+            assertEquals(AutomatedInstallData.CUSTOM_ACTION_TYPES.length + 1, customActions.length);
+            assertEquals(Arrays.asList(listener), customActions[customActions.length - 1]);
+
+            unpacker.informListeners(customActions, InstallerListener.BEFORE_FILE, new File("a"),
+                    null, null);
+            unpacker.informListeners(customActions, InstallerListener.AFTER_FILE, new File("a"),
+                    null, null);
+            assertEquals(Arrays.asList("before a", "after a"), listener.events);
+            assertEquals(Arrays.asList(1), batch.batches);
+        }
+        finally
+        {
+            idata.customData.put("/installerListeners", old);
+        }
+    }
+}
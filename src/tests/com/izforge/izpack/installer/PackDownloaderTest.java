@@ -0,0 +1,316 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer;
+
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Tests the PackDownloader against a minimal local HTTP server.
+ */
+public class PackDownloaderTest extends TestCase
+{
+    private ServerSocket server;
+
+    private String baseUrl;
+
+    private File cacheDir;
+
+    private final Map<String, byte[]> jars = new HashMap<String, byte[]>();
+
+    /**
+     * The requested paths with their range headers.
+     */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * The paths whose next response breaks off in the middle.
+     */
+    private final Set<String> breaking = Collections.synchronizedSet(new HashSet<String>());
+
+    protected void setUp() throws Exception
+    {
+        server = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread("http stand-in")
+        {
+            public void run()
+            {
+                accept();
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+        baseUrl = "http://127.0.0.1:" + server.getLocalPort();
+
+        cacheDir = File.createTempFile("downloads", "");
+        cacheDir.delete();
+
+        for (int i = 0; i < 3; i++)
+        {
+            jars.put("/installer.pack-" + i + ".jar", createJar(i));
+        }
+    }
+
+    protected void tearDown() throws Exception
+    {
+        server.close();
+        File[] files = cacheDir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        cacheDir.delete();
+    }
+
+    private static byte[] createJar(int pack) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream out = new ZipOutputStream(bytes);
+        out.putNextEntry(new ZipEntry("packs/pack-" + pack));
+        Random random = new Random(pack);
+        byte[] data = new byte[200000];
+        random.nextBytes(data);
+        out.write(data);
+        out.closeEntry();
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private void accept()
+    {
+        while (true)
+        {
+            final Socket socket;
+            try
+            {
+                socket = server.accept();
+            }
+            catch (IOException e)
+            {
+                // closed
+                return;
+            }
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        serve(socket);
+                    }
+                    catch (IOException e)
+                    {
+                        // the client went away
+                    }
+                    finally
+                    {
+                        try
+                        {
+                            socket.close();
+                        }
+                        catch (IOException e)
+                        {
+                            // nothing to do
+                        }
+                    }
+                }
+            }.start();
+        }
+    }
+
+    /**
+     * Serves one request and closes the connection.
+     */
+    private void serve(Socket socket) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                "ISO-8859-1"));
+        String path = in.readLine().split(" ")[1];
+        String range = null;
+        String line;
+        while ((line = in.readLine()) != null && line.length() > 0)
+        {
+            if (line.toLowerCase().startsWith("range:"))
+            {
+                range = line.substring("range:".length()).trim();
+            }
+        }
+        requests.add(path + (range != null ? " " + range : ""));
+
+        OutputStream out = socket.getOutputStream();
+        byte[] jar = jars.get(path);
+        if (jar == null)
+        {
+            out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes("ISO-8859-1"));
+            out.flush();
+            return;
+        }
+        int offset = 0;
+        String header;
+        if (range != null)
+        {
+            offset = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            header = "HTTP/1.1 206 Partial Content\r\nContent-Range: bytes " + offset + "-"
+                    + (jar.length - 1) + "/" + jar.length + "\r\n";
+        }
+        else
+        {
+            header = "HTTP/1.1 200 OK\r\n";
+        }
+        header += "Content-Length: " + (jar.length - offset) + "\r\nConnection: close\r\n\r\n";
+        out.write(header.getBytes("ISO-8859-1"));
+        if (breaking.remove(path))
+        {
+            // send half of the data, then drop the connection
+            out.write(jar, offset, (jar.length - offset) / 2);
+            out.flush();
+            return;
+        }
+        out.write(jar, offset, jar.length - offset);
+        out.flush();
+    }
+
+    private static byte[] read(File file) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            bytes.write(buffer, 0, read);
+        }
+        in.close();
+        return bytes.toByteArray();
+    }
+
+    public void testPrefetch() throws Exception
+    {
+        PackDownloader downloader = new PackDownloader(cacheDir, 2,
+                PackDownloader.DEFAULT_MAX_CACHED_BYTES);
+        try
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                downloader.prefetch(baseUrl + "/installer.pack-" + i + ".jar");
+            }
+            for (int i = 0; i < 3; i++)
+            {
+                String path = "/installer.pack-" + i + ".jar";
+                File file = downloader.get(baseUrl + path);
+                assertTrue(Arrays.equals(jars.get(path), read(file)));
+                // taking it again doesn't download it again
+                assertEquals(file, downloader.get(baseUrl + path));
+            }
+            assertEquals(3, requests.size());
+        }
+        finally
+        {
+            downloader.shutdown();
+        }
+    }
+
+    public void testResume() throws Exception
+    {
+        String path = "/installer.pack-1.jar";
+        breaking.add(path);
+        PackDownloader downloader = new PackDownloader(cacheDir, 1,
+                PackDownloader.DEFAULT_MAX_CACHED_BYTES);
+        try
+        {
+            File file = downloader.get(baseUrl + path);
+            assertTrue(Arrays.equals(jars.get(path), read(file)));
+            assertEquals(2, requests.size());
+            assertEquals(path, requests.get(0));
+            assertTrue(requests.get(1).startsWith(path + " bytes="));
+        }
+        finally
+        {
+            downloader.shutdown();
+        }
+    }
+
+    public void testCorrupted() throws Exception
+    {
+        String path = "/installer.pack-2.jar";
+        byte[] jar = jars.get(path);
+        jar[jar.length / 2] ^= 0x55;
+        PackDownloader downloader = new PackDownloader(cacheDir, 1,
+                PackDownloader.DEFAULT_MAX_CACHED_BYTES);
+        try
+        {
+            downloader.get(baseUrl + path);
+            fail("The corrupted jar was not detected");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+        finally
+        {
+            downloader.shutdown();
+        }
+        assertFalse(new File(cacheDir, "installer.pack-2.jar").exists());
+    }
+
+    public void testCacheLimit() throws Exception
+    {
+        PackDownloader downloader = new PackDownloader(cacheDir, 1, 1);
+        try
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                downloader.prefetch(baseUrl + "/installer.pack-" + i + ".jar");
+            }
+            // the first finished download fills the cache, the thread then waits for space
+            File first = new File(cacheDir, "installer.pack-0.jar");
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!first.exists())
+            {
+                assertTrue("first download not finished", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            assertEquals(1, requests.size());
+
+            // taking the last one doesn't wait for the limit
+            File file = downloader.get(baseUrl + "/installer.pack-2.jar");
+            assertTrue(Arrays.equals(jars.get("/installer.pack-2.jar"), read(file)));
+            for (int i = 0; i < 2; i++)
+            {
+                downloader.get(baseUrl + "/installer.pack-" + i + ".jar");
+            }
+            assertEquals(3, requests.size());
+        }
+        finally
+        {
+            downloader.shutdown();
+        }
+    }
+}
@@ -25,6 +25,11 @@ package com.izforge.izpack.installer;
 import com.izforge.izpack.util.VariableSubstitutor;
 import junit.framework.TestCase;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Properties;
+
 
 /**
  * This will test some characters as UTF-8.
@@ -98,4 +103,37 @@ public class SubstitutorTest extends TestCase
         String returnStr = subst.substitute(japanesString, null);
         assertEquals(japanesString, returnStr);
     }
+
+    /**
+     * Tests that a template gives the same result as substituting the variables directly, also
+     * after the variables changed.
+     */
+    public void testTemplate() throws IOException
+    {
+        Properties variables = new Properties();
+        VariableSubstitutor substitutor = new VariableSubstitutor(variables);
+        String[] types = {null, "xml", "javaprop", "shell", "at", "ant"};
+        String data = "$A ${A}B $B$ ${B x${A}$$A%A%@A@@B@@A $ ${ } $A-1 ${ENV[NO_SUCH_VARIABLE]} $";
+        for (String type : types)
+        {
+            VariableSubstitutor.Template template = substitutor.compile(new StringReader(data), type);
+            for (int i = 0; i < 3; i++)
+            {
+                if (i == 1)
+                {
+                    variables.setProperty("A", "a<'\\\"> ");
+                }
+                if (i == 2)
+                {
+                    variables.setProperty("B", "b");
+                }
+                StringWriter expected = new StringWriter();
+                int subs = substitutor.substitute(new StringReader(data), expected, type);
+                StringWriter actual = new StringWriter();
+                assertEquals(subs, template.write(actual));
+                assertEquals(expected.toString(), actual.toString());
+            }
+            variables.clear();
+        }
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.rules;
+
+import com.izforge.izpack.adaptator.IXMLElement;
+import com.izforge.izpack.installer.AutomatedInstallData;
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+public class RulesEngineTest extends TestCase
+{
+    private AutomatedInstallData idata;
+
+    private RulesEngine rules;
+
+    private CountingCondition counting;
+
+    protected void setUp() throws Exception
+    {
+        idata = AutomatedInstallData.getInstance();
+        Map<String, Condition> conditions = new HashMap<String, Condition>();
+        add(conditions, new VariableCondition("TEST", "true"), "test.true");
+        add(conditions, new VariableCondition("OTHER", "true"), "other.true");
+        counting = new CountingCondition();
+        add(conditions, counting, "test.counting");
+        rules = new RulesEngine(conditions, idata);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        idata.getVariables().clear();
+    }
+
+    private void add(Map<String, Condition> conditions, Condition condition, String id)
+    {
+        condition.setId(id);
+        conditions.put(id, condition);
+    }
+
+    public void testOtherVariableKeepsResult()
+    {
+        assertFalse(rules.isConditionTrue("test.counting"));
+        assertFalse(rules.isConditionTrue("test.counting"));
+        assertEquals(1, counting.evaluations);
+
+        idata.setVariable("OTHER", "true");
+        assertFalse(rules.isConditionTrue("test.counting"));
+        assertEquals(1, counting.evaluations);
+
+        idata.setVariable("TEST", "true");
+        assertTrue(rules.isConditionTrue("test.counting"));
+        assertEquals(2, counting.evaluations);
+    }
+
+    public void testVariablesMapChange()
+    {
+        Properties variables = idata.getVariables();
+        assertFalse(rules.isConditionTrue("test.true"));
+
+        variables.setProperty("TEST", "true");
+        assertTrue(rules.isConditionTrue("test.true"));
+
+        variables.remove("TEST");
+        assertFalse(rules.isConditionTrue("test.true"));
+
+        Properties other = new Properties();
+        other.setProperty("TEST", "true");
+        variables.putAll(other);
+        assertTrue(rules.isConditionTrue("test.true"));
+
+        for (Map.Entry<Object, Object> entry : variables.entrySet())
+        {
+            if ("TEST".equals(entry.getKey()))
+            {
+                entry.setValue("false");
+            }
+        }
+        assertFalse(rules.isConditionTrue("test.true"));
+
+        variables.setProperty("TEST", "true");
+        assertTrue(rules.isConditionTrue("test.true"));
+        variables.keySet().remove("TEST");
+        assertFalse(rules.isConditionTrue("test.true"));
+    }
+
+    public void testExpressions()
+    {
+        Properties variables = idata.getVariables();
+        idata.setVariable("TEST", "true");
+        assertTrue(rules.isConditionTrue("test.true|other.true", variables));
+        assertFalse(rules.isConditionTrue("test.true+other.true", variables));
+        assertTrue(rules.isConditionTrue("test.true+!other.true", variables));
+        assertTrue(rules.isConditionTrue("test.true\\other.true", variables));
+
+        // an unknown condition id is ignored, an invalid expression is false
+        assertTrue(rules.isConditionTrue("typo", variables));
+        assertFalse(rules.isConditionTrue("test.true+typo", variables));
+        assertFalse(rules.isConditionTrue("test.true|typo", variables));
+        assertFalse(rules.isConditionTrue("!typo", variables));
+        assertFalse(rules.isConditionTrue("test.true+", variables));
+    }
+
+    /**
+     * A condition on the variable <code>TEST</code> which counts its evaluations.
+     */
+    private static class CountingCondition extends Condition
+    {
+        private int evaluations;
+
+        public void readFromXML(IXMLElement xmlcondition)
+        {
+        }
+
+        public boolean isTrue()
+        {
+            evaluations++;
+            return "true".equals(installdata.getVariable("TEST"));
+        }
+
+        public Set<String> getVariableDependencies()
+        {
+            return Collections.singleton("TEST");
+        }
+    }
+}
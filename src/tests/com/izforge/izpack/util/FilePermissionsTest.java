@@ -0,0 +1,94 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+
+public class FilePermissionsTest extends TestCase
+{
+    private File file;
+
+    protected void setUp() throws Exception
+    {
+        file = File.createTempFile("permissions", ".sh");
+    }
+
+    protected void tearDown() throws Exception
+    {
+        file.delete();
+    }
+
+    /**
+     * Reads the permissions with <code>stat</code>.
+     */
+    private String getMode() throws Exception
+    {
+        Process process = Runtime.getRuntime().exec(new String[]{"stat", "-c", "%a",
+                file.getPath()});
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String mode = reader.readLine();
+        reader.close();
+        process.waitFor();
+        return mode;
+    }
+
+    public void testSetMode() throws Exception
+    {
+        if (!OsVersion.IS_LINUX)
+        {
+            return;
+        }
+        assertTrue(FilePermissions.setMode(file, 0755));
+        assertEquals("755", getMode());
+        assertTrue(FilePermissions.setMode(file, 0600));
+        assertEquals("600", getMode());
+        assertTrue(FilePermissions.setMode(file, 0744));
+        assertEquals("744", getMode());
+
+        // group and others differ, or set-user-ID
+        assertFalse(FilePermissions.setMode(file, 0750));
+        assertFalse(FilePermissions.setMode(file, 04755));
+        assertEquals("744", getMode());
+    }
+
+    public void testChmod() throws Exception
+    {
+        if (!OsVersion.IS_LINUX)
+        {
+            return;
+        }
+        assertTrue(FilePermissions.chmod(file, "644"));
+        assertEquals("644", getMode());
+        assertTrue(FilePermissions.chmod(file, "a+x"));
+        assertEquals("755", getMode());
+        assertTrue(FilePermissions.chmod(file, "u-w,-x"));
+        assertEquals("444", getMode());
+        assertTrue(FilePermissions.setExecutable(file));
+        assertEquals("555", getMode());
+
+        assertFalse(FilePermissions.chmod(file, "g+w"));
+        assertFalse(FilePermissions.chmod(file, "u=rwx"));
+        assertEquals("555", getMode());
+    }
+}
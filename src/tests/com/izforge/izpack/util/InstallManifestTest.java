@@ -0,0 +1,185 @@
+/*
+ * IzPack - Copyright 2001-2009 Julien Ponge, All Rights Reserved.
+ *
+ * http://izpack.org/
+ * http://izpack.codehaus.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util;
+
+import com.izforge.izpack.ParsableFile;
+import com.izforge.izpack.installer.ScriptParser;
+import com.izforge.izpack.installer.UninstallData;
+import junit.framework.TestCase;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+public class InstallManifestTest extends TestCase
+{
+    private File installDir;
+
+    private List<String> files;
+
+    private Map<String, String> packs;
+
+    private Map<String, String> digests;
+
+    protected void setUp() throws Exception
+    {
+        installDir = File.createTempFile("manifest", "");
+        installDir.delete();
+        File lib = new File(installDir, "lib");
+        lib.mkdirs();
+        files = new ArrayList<String>();
+        packs = new HashMap<String, String>();
+        digests = new HashMap<String, String>();
+        add(new File(lib, "core.jar"), "core", "Core");
+        add(new File(lib, "extra.jar"), "extra", "Extra");
+        add(new File(installDir, "readme.txt"), "readme", "Core");
+        add(new File(installDir, "uninstall.sh"), "#!/bin/sh", null);
+    }
+
+    protected void tearDown() throws Exception
+    {
+        for (String path : files)
+        {
+            new File(path).delete();
+        }
+        new File(installDir, "lib").delete();
+        installDir.delete();
+    }
+
+    private void add(File file, String content, String pack) throws IOException
+    {
+        FileWriter writer = new FileWriter(file);
+        writer.write(content);
+        writer.close();
+        files.add(file.getPath());
+        if (pack != null)
+        {
+            // only the files of packs are unpacked and have a digest
+            packs.put(file.getPath(), pack);
+            digests.put(file.getPath(), InstallManifest.digest(file));
+        }
+    }
+
+    private InstallManifest writeAndRead() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InstallManifest.write(out, installDir.getPath(), files, packs, digests);
+        return InstallManifest.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    public void testReadBack() throws IOException
+    {
+        InstallManifest manifest = writeAndRead();
+        assertEquals(installDir.getPath(), manifest.getInstallPath());
+        assertEquals(files.size(), manifest.size());
+        for (String path : files)
+        {
+            int entry = manifest.indexOf(path);
+            assertTrue(entry >= 0);
+            assertEquals(path, manifest.getPath(entry));
+            File file = new File(path);
+            assertTrue(manifest.exists(entry));
+            assertEquals(file.length(), manifest.getSize(entry));
+            assertEquals(file.lastModified(), manifest.getLastModified(entry));
+            assertEquals(digests.get(path), manifest.getDigest(entry));
+            assertEquals(packs.get(path), manifest.getPack(entry));
+            assertFalse(manifest.isModified(entry));
+        }
+        assertEquals(-1, manifest.indexOf(new File(installDir, "missing").getPath()));
+        assertEquals(2, manifest.getPaths("Core").size());
+        assertEquals(1, manifest.getPaths("Extra").size());
+    }
+
+    public void testStreamingReader() throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InstallManifest.write(out, installDir.getPath(), files, packs, digests);
+        InstallManifest.Reader reader = new InstallManifest.Reader(new ByteArrayInputStream(
+                out.toByteArray()));
+        assertEquals(files.size(), reader.getCount());
+        String previous = "";
+        int count = 0;
+        while (reader.next())
+        {
+            assertTrue(previous.compareTo(reader.getPath()) < 0);
+            assertEquals(packs.get(reader.getPath()), reader.getPack());
+            previous = reader.getPath();
+            count++;
+        }
+        assertEquals(files.size(), count);
+    }
+
+    public void testModified() throws IOException
+    {
+        InstallManifest manifest = writeAndRead();
+        File readme = new File(installDir, "readme.txt");
+        int entry = manifest.indexOf(readme.getPath());
+
+        // touched, but the content is the same
+        readme.setLastModified(manifest.getLastModified(entry) - 10000);
+        assertFalse(manifest.isModified(entry));
+
+        // same size, other content
+        FileWriter writer = new FileWriter(readme);
+        writer.write("README");
+        writer.close();
+        readme.setLastModified(manifest.getLastModified(entry) - 10000);
+        assertTrue(manifest.isModified(entry));
+
+        File core = new File(installDir, "lib/core.jar");
+        core.delete();
+        assertTrue(manifest.isModified(manifest.indexOf(core.getPath())));
+
+        // touched, without a digest to compare the content with
+        File script = new File(installDir, "uninstall.sh");
+        entry = manifest.indexOf(script.getPath());
+        assertNull(manifest.getDigest(entry));
+        script.setLastModified(manifest.getLastModified(entry) - 10000);
+        assertTrue(manifest.isModified(entry));
+    }
+
+    public void testParsedFile() throws Exception
+    {
+        // the unpacker records the digest of the file as it is unpacked
+        File config = new File(installDir, "config.properties");
+        add(config, "home=${INSTALL_PATH}", "Core");
+        UninstallData udata = UninstallData.getInstance();
+        udata.setFileDigest(config.getPath(), digests.get(config.getPath()));
+
+        List<ParsableFile> parsables = new ArrayList<ParsableFile>();
+        parsables.add(new ParsableFile(config.getPath(), VariableSubstitutor.PLAIN, null, null));
+        Properties variables = new Properties();
+        variables.setProperty("INSTALL_PATH", installDir.getPath());
+        ScriptParser parser = new ScriptParser(parsables, new VariableSubstitutor(variables));
+        parser.setUninstallData(udata);
+        parser.parseFiles();
+        digests.put(config.getPath(), udata.getFileDigests().remove(config.getPath()));
+        assertEquals(InstallManifest.digest(config), digests.get(config.getPath()));
+
+        // touched after the installation, but the content is the parsed one
+        InstallManifest manifest = writeAndRead();
+        int entry = manifest.indexOf(config.getPath());
+        config.setLastModified(manifest.getLastModified(entry) - 10000);
+        assertFalse(manifest.isModified(entry));
+    }
+}